@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import static gitlet.Utils.*;
+
+/**
+ * Helper class that resolves blobs by their name, whether they are still stored as loose files
+ * in the .gitlet directory or have been rolled into a packfile by the repack command. Files are
+ * hashed, stored and restored through a fixed-size buffer, so neither their size nor their
+ * encoding matters.
+ *
+ * @author Vipul Sharma
+ */
+public class BlobStore {
+	/** Size of the buffer files are streamed through. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Returns true if the blob with the given name is stored either loose or in a packfile. */
+	public static boolean exists(String blobName) {
+		return looseBlobFile(blobName).isFile() || PackFile.contains(blobName);
+	}
+
+	/** Returns true if the given name looks like the name of a blob, i.e. a complete sha1-hash. */
+	public static boolean isBlobName(String name) {
+		return name.length() == UID_LENGTH && name.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+	}
+
+	/** Returns the location of the loose file of the blob with the given name. */
+	public static File looseBlobFile(String blobName) {
+		return join(GITLET_DIR, blobName);
+	}
+
+	/** Returns the sha1-hash of the contents of the given file. */
+	public static String hashFile(File file) {
+		MessageDigest digest = newSha1Digest();
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, length);
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+		return toHexString(digest.digest());
+	}
+
+	/** Hashes the given file and copies it into a temporary file in the same pass, which becomes
+	 * the loose blob of the file unless a blob with the same contents already exists. */
+	public static StoredBlob storeBlob(File file) {
+		MessageDigest digest = newSha1Digest();
+		File tempFile;
+		try {
+			tempFile = Files.createTempFile(GITLET_DIR.toPath(), "blob-", ".tmp").toFile();
+			try (InputStream in = new FileInputStream(file);
+			     OutputStream out = new FileOutputStream(tempFile)) {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int length;
+				while ((length = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, length);
+					out.write(buffer, 0, length);
+				}
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+
+		String blobName = toHexString(digest.digest());
+		if (exists(blobName)) {
+			if (!tempFile.delete()) {
+				exitWithError("Could not delete file - " + tempFile.getName(), false);
+			}
+			return new StoredBlob(blobName, false);
+		}
+		if (!tempFile.renameTo(looseBlobFile(blobName))) {
+			exitWithError("Could not create blob for " + file.getPath(), false);
+		}
+		Transaction.recordObject(looseBlobFile(blobName));
+		return new StoredBlob(blobName, true);
+	}
+
+	/** Returns the contents of the blob with the given name. */
+	public static byte[] readBlob(String blobName) {
+		return ObjectCache.BLOBS.get(blobName, BlobStore::readBlobContents);
+	}
+
+	/** Returns the contents of the blob with the given name, without looking in the cache of
+	 * blobs. */
+	private static byte[] readBlobContents(String blobName) {
+		File blobFile = looseBlobFile(blobName);
+		if (blobFile.isFile()) {
+			return readContents(blobFile);
+		}
+
+		byte[] contents = PackFile.read(blobName);
+		if (contents == null) {
+			exitWithError("Blob " + blobName + " does not exist.", false);
+		}
+		return contents;
+	}
+
+	/** Overwrites the given file with the contents of the blob with the given name, creating its
+	 * parent directories if needed. Loose blobs are copied channel to channel. */
+	public static void restoreBlob(String blobName, File file) {
+		File parentDirectory = file.getAbsoluteFile().getParentFile();
+		if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+			exitWithError("Could not create directory - " + parentDirectory.getName(), false);
+		}
+
+		File blobFile = looseBlobFile(blobName);
+		if (!blobFile.isFile()) {
+			writeContents(file, readBlob(blobName));
+			return;
+		}
+
+		try (FileChannel in = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ);
+		     FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				position += in.transferTo(position, size - position, out);
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns a stream of the contents of the blob with the given name. Loose blobs are read as
+	 * they are streamed, packed blobs are read whole first. */
+	public static InputStream openBlob(String blobName) {
+		File blobFile = looseBlobFile(blobName);
+		try {
+			return blobFile.isFile() ? new FileInputStream(blobFile) : new ByteArrayInputStream(readBlob(blobName));
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Writes the contents of the blob with the given name to OUT. */
+	public static void writeBlobTo(String blobName, OutputStream out) {
+		try (InputStream in = openBlob(blobName)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while ((length = in.read(buffer)) != -1) {
+				out.write(buffer, 0, length);
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** The name of a blob stored by storeBlob, and whether storing it created a new blob. */
+	public static class StoredBlob {
+		private final String blobName;
+		private final boolean isNew;
+
+		StoredBlob(String blobName, boolean isNew) {
+			this.blobName = blobName;
+			this.isNew = isNew;
+		}
+
+		/** Returns the name of the blob. */
+		public String getBlobName() {
+			return this.blobName;
+		}
+
+		/** Returns true if the blob did not exist before it was stored. */
+		public boolean isNew() {
+			return this.isNew;
+		}
+	}
+}
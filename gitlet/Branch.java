@@ -1,10 +1,15 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static gitlet.Utils.*;
 
@@ -20,21 +25,22 @@ public class Branch {
 		this.headCommit = headCommit;
 		
 		if (initialCommit) {
-			writeContents(HEAD_FILE, "*" + this.name + " " + this.headCommit.getHash());
+			RefStore.initialize(this.name, this.headCommit.getHash());
 			return;
 		}
 		if (this.name.contains("*")) {
 			System.out.println("Branch name can not contain an asterisk (*).");
+		} else if (!RefStore.isValidBranchName(this.name)) {
+			System.out.println("Branch name " + this.name + " is not valid.");
 		} else if (checkIfBranchExists(this.name)) {
 			System.out.println(this.name + " branch already exists!");
 		} else {
-			writeContents(HEAD_FILE, readContentsAsString(HEAD_FILE) + "\n" +
-						this.name + " " + this.headCommit.getHash());
+			RefStore.create(this.name, this.headCommit.getHash());
 			
 			File branchTrackingFile = join(BRANCH_TRACKING, this.name);
 			
-			if (TRACKING_FILE.exists()) {
-				writeContents(branchTrackingFile, readContentsAsString(TRACKING_FILE));
+			if (!FileRegistry.tracked().isEmpty()) {
+				FileRegistry.tracked().writeTo(branchTrackingFile);
 			}
 			System.out.println("Branch " + branchName + " created.");
 		}
@@ -60,19 +66,7 @@ public class Branch {
 	
 	/** Returns true if a branch already exists with the given name. */
 	public static boolean checkIfBranchExists(String newBranchName) {
-		String[] branchList = getAllBranchesDetails();
-		
-		for (String branch: branchList) {
-			String branchName = branch.split(" ")[0];
-			
-			if (branchName.startsWith("*") && branchName.substring(1).equals(newBranchName)) {
-				return true;
-			} else if (branchName.equals(newBranchName)) {
-				return true;
-			}
-		}
-		
-		return false;
+		return RefStore.exists(newBranchName);
 	}
 	
 	/** Checks out branch with the given name. If successful, the head then points to this branch. */
@@ -85,31 +79,22 @@ public class Branch {
 		switchToBranch(branchName, headCommitOfBranch);
 	}
 	
-	/** Returns and array that contains the name and head of the branch currently checked out. */
-	private static String fetchCurrentBranchDetails() {
-		String[] branchList = getAllBranchesDetails();
-		
-		for (String branch: branchList) {
-			if (branch.startsWith("*")) {
-				return branch;
-			}
-		}
-		return null;
-	}
-	
-	/** Returns an array that contains name and heads of all branches. */
+	/** Returns an array that contains name and heads of all branches, the current branch marked
+	 * with an asterisk. Every ref is read, so this should only be used when all of them are needed. */
 	public static String[] getAllBranchesDetails() {
-		return readContentsAsString(HEAD_FILE).split("\n");
+		String currentBranch = getCurrentBranch();
+		return RefStore.branchNames().stream().map(branchName -> (branchName.equals(currentBranch) ? "*" : "")
+				+ branchName + " " + RefStore.read(branchName)).toArray(String[]::new);
 	}
 	
-	/** Returns an array that contains current branch and its head. */
+	/** Returns an array that contains current branch, marked with an asterisk, and its head. */
 	public static String[] getBranchAndItsHead() {
-		return Objects.requireNonNull(Branch.fetchCurrentBranchDetails()).split(" ");
+		return new String[] {"*" + getCurrentBranch(), getCurrentBranchHeadHash()};
 	}
 	
 	/** Returns name of the current branch. */
 	public static String getCurrentBranch() {
-		return getBranchAndItsHead()[0].substring(1);
+		return RefStore.currentBranch();
 	}
 	
 	/** Return the head commit of the current branch. */
@@ -120,30 +105,26 @@ public class Branch {
 	
 	/** Returns hash of the head commit. */
 	public static String getCurrentBranchHeadHash() {
-		return getBranchAndItsHead()[1];
+		String commitHash = RefStore.read(getCurrentBranch());
+		if (commitHash == null) {
+			exitWithError(CORRUPTED_REPO, false);
+		}
+		return commitHash;
 	}
 	
 	/** Returns the hash of the head commit of the given branch name.
 	 * This method should NOT be used to fetch the hash of the head commit of the current branch,
 	 * getCurrentBranchHeadHash() should be used for that. */
 	public static String getHeadHashOfBranch(String branchName) {
-		String[] branchList = getAllBranchesDetails();
-		
-		for (String branch : branchList) {
-			String[] currBranch = branch.split(" ");
-			if (currBranch[0].equals(branchName)) {
-				return currBranch[1];
-			}
-		}
-		return null;
+		return RefStore.read(branchName);
 	}
 	
 	/** Prints out the names of all the branches. */
 	public static void listBranches() {
-		String[] branchList = getAllBranchesDetails();
+		String currentBranch = getCurrentBranch();
 		
-		for (String branch: branchList) {
-			System.out.println(branch.split(" ")[0]);
+		for (String branchName: RefStore.branchNames()) {
+			System.out.println(branchName.equals(currentBranch) ? "*" + branchName : branchName);
 		}
 	}
 	
@@ -159,7 +140,7 @@ public class Branch {
 		} else if (splitPoint.equals(mergingBranchHeadHash)) {
 			System.out.println("Given branch is an ancestor of the current branch.");
 		} else if (splitPoint.equals(currentBranchHeadHash)) {
-			fastForwardBranch(mergingBranchHeadHash, mergingBranchHeadFiles);
+			fastForwardBranch(mergingBranchHeadHash, currentBranchHeadFiles, mergingBranchHeadFiles);
 		} else {
 			mergeBranches(currentBranch, mergingBranch, splitPoint, currentBranchHeadHash,
 					mergingBranchHeadHash, currentBranchHeadFiles, mergingBranchHeadFiles);
@@ -168,28 +149,15 @@ public class Branch {
 	
 	/** Updates head of the current branch. */
 	public static void updateBranchHead(String newHead) {
-		String headContent = readContentsAsString(HEAD_FILE);
-		String[] branchList = headContent.split("\n");
-		
-		for (String branch: branchList) {
-			if (branch.startsWith("*")) {
-				String temp = branch;
-				branch = branch.replace(branch.split(" ")[1], newHead);
-				headContent = headContent.replace(temp, branch);
-				break;
-			}
-		}
-		
-		writeContents(HEAD_FILE, headContent);
+		RefStore.update(getCurrentBranch(), newHead);
 	}
 	
 	/******************************* PRIVATE HELPER FUNCTIONS ****************************** //
 	 /** Fast-forwards a branch, basically checks out a given branch, i.e. places files from another branch
 	 * into the current branch. */
-	private static void fastForwardBranch(String mergingBranchHeadHash,
+	private static void fastForwardBranch(String mergingBranchHeadHash, Map<String, String> currentBranchHeadFiles,
 	                                      Map<String, String> mergingBranchHeadFiles) {
-		Repository.replaceFilesInWorkingDirectory(mergingBranchHeadFiles);
-		Repository.deleteTrackedFiles(mergingBranchHeadFiles);
+		Repository.checkoutFiles(currentBranchHeadFiles, mergingBranchHeadFiles);
 		Branch.updateBranchHead(mergingBranchHeadHash);
 		System.out.println("Current branch fast-forwarded.");
 	}
@@ -202,6 +170,8 @@ public class Branch {
 		
 		Commit splitPointCommit = Commit.getCommitFromHash(splitPoint);
 		Map<String, String> splitPointCommitFiles = splitPointCommit.getStagedFilesCommit();
+		/* Files taken as they are from the given branch, written all at once and then staged. */
+		Map<String, String> filesToCheckOut = new TreeMap<>();
 		
 		for (var splitFileAndHash: splitPointCommitFiles.entrySet()) {
 			String fileRelativePath = splitFileAndHash.getKey();
@@ -215,9 +185,7 @@ public class Branch {
 					!fileMergingBranchHash.equals("") && fileCurrentBranchHash.equals(fileSplitPointHash)) {
 				/* For files that have been modified in the given branch since split point, but not
 				* modified in the current branch. - 1 */
-				Repository.restoreFileFromCommit(fileRelativePath, fileMergingBranchHash,
-						false, false, "");
-				Repository.add(fileRelativePath, true);
+				filesToCheckOut.put(fileRelativePath, fileMergingBranchHash);
 			} else if (fileCurrentBranchHash.equals(fileSplitPointHash) &&
 					fileMergingBranchHash.equals("")) {
 				/* For files present at the split point, unmodified in the current branch, and absent in
@@ -230,7 +198,8 @@ public class Branch {
 							fileMergingBranchHash.equals("")) || (!fileMergingBranchHash.equals(fileSplitPointHash)
 					&& !fileMergingBranchHash.equals("") && fileCurrentBranchHash.equals(""))) {
 				/* Any files modified in different ways in the current and given branches are in conflict. - 8 */
-				mergeConflict(fileRelativePath, fileCurrentBranchHash, fileMergingBranchHash);
+				mergeConflict(fileRelativePath, fileSplitPointHash, fileCurrentBranchHash,
+						fileMergingBranchHash, mergingBranch);
 			}
 		}
 		
@@ -242,17 +211,23 @@ public class Branch {
 			String currentBranchFileHash = currentBranchHeadStagedFiles.get(fileRelativePath);
 			
 			if (!splitPointCommitFiles.containsKey(fileRelativePath) && currentBranchFileHash == null) {
-				Repository.restoreFileFromCommit(fileRelativePath, mergingBranchFileHash,
-						false, false, "");
-				Repository.add(fileRelativePath, true);
+				filesToCheckOut.put(fileRelativePath, mergingBranchFileHash);
 			} else if (!splitPointCommitFiles.containsKey(fileRelativePath) && currentBranchFileHash != null
 			&& !currentBranchFileHash.equals(mergingBranchFileHash)) {
-				mergeConflict(fileRelativePath, currentBranchFileHash, mergingBranchFileHash);
+				mergeConflict(fileRelativePath, "", currentBranchFileHash, mergingBranchFileHash,
+						mergingBranch);
 			}
 		}
 		
+		CheckoutWriter checkoutWriter = new CheckoutWriter();
+		filesToCheckOut.forEach(checkoutWriter::add);
+		checkoutWriter.write();
+		for (String fileRelativePath: filesToCheckOut.keySet()) {
+			Repository.add(fileRelativePath, true);
+		}
+		
 		String mergeCommitMessage = "Merging " + mergingBranch + " with " + currentBranch;
-		if ((INDEX_FILE.exists() && FileStager.getNumberOfStagedFiles() >= 1) || UNTRACKING_FILE.exists()) {
+		if (FileStager.getNumberOfStagedFiles() >= 1 || !FileRegistry.removed().isEmpty()) {
 			Commit mergeCommit = Commit.cloneAndModifyCommit(currentBranchHeadHash, mergeCommitMessage,
 					mergingBranchHeadHash, true);
 			Commit.afterCommit("*" + currentBranch, mergeCommit.getHash(), mergeCommitMessage);
@@ -262,47 +237,85 @@ public class Branch {
 		}
 	}
 	
-	/** Write to conflicted file in case of overlapping content. */
-	private static void mergeConflict(String fileRelativePath, String fileCurrentBranchHash, String
-	                                  fileMergingBranchHash) {
+	/** Write to conflicted file in case of overlapping content. Text files changed in both branches
+	 * are merged line by line, a file deleted in one branch or a binary file is written whole. */
+	private static void mergeConflict(String fileRelativePath, String fileSplitPointHash,
+	                                  String fileCurrentBranchHash, String fileMergingBranchHash,
+	                                  String mergingBranch) {
 		File conflictedFile = new File(fileRelativePath);
-		File conflictedFileInCurrentBranch = join(GITLET_DIR, fileCurrentBranchHash);
-		File conflictedFileInMergingBranch = join(GITLET_DIR, fileMergingBranchHash);
 		
-		String conflictedFileContent = "<<<<<<< HEAD\n";
-		if (!fileCurrentBranchHash.equals("")) {
-			conflictedFileContent += readContentsAsString(conflictedFileInCurrentBranch) + "\n";
+		if (!fileCurrentBranchHash.equals("") && !fileMergingBranchHash.equals("")
+				&& mergeLines(conflictedFile, fileSplitPointHash, fileCurrentBranchHash, fileMergingBranchHash,
+				mergingBranch)) {
+			return;
 		}
-		conflictedFileContent += "=======\n";
-		if (!fileMergingBranchHash.equals("")) {
-			conflictedFileContent += readContentsAsString(conflictedFileInMergingBranch) + "\n";
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(conflictedFile))) {
+			out.write("<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8));
+			if (!fileCurrentBranchHash.equals("")) {
+				BlobStore.writeBlobTo(fileCurrentBranchHash, out);
+				out.write('\n');
+			}
+			out.write("=======\n".getBytes(StandardCharsets.UTF_8));
+			if (!fileMergingBranchHash.equals("")) {
+				BlobStore.writeBlobTo(fileMergingBranchHash, out);
+				out.write('\n');
+			}
+			out.write(">>>>>>>".getBytes(StandardCharsets.UTF_8));
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
 		}
-		conflictedFileContent += ">>>>>>>";
-		
-		writeContents(conflictedFile, conflictedFileContent);
 		Repository.add(fileRelativePath, false);
 		
 		System.out.println("Encountered a merge conflict. Check the contents of " + fileRelativePath +
 				" to resolve.");
 	}
 	
+	/** Merges the lines of a file changed in both branches into the file. Returns false without
+	 * writing anything if any version of the file is binary, otherwise stages the merged file and
+	 * reports whether it has conflicts. */
+	private static boolean mergeLines(File conflictedFile, String fileSplitPointHash, String fileCurrentBranchHash,
+	                                  String fileMergingBranchHash, String mergingBranch) {
+		byte[] splitPointContents = fileSplitPointHash.equals("") ? new byte[0]
+				: BlobStore.readBlob(fileSplitPointHash);
+		byte[] currentBranchContents = BlobStore.readBlob(fileCurrentBranchHash);
+		byte[] mergingBranchContents = BlobStore.readBlob(fileMergingBranchHash);
+		if (LineDiff.isBinary(splitPointContents) || LineDiff.isBinary(currentBranchContents)
+				|| LineDiff.isBinary(mergingBranchContents)) {
+			return false;
+		}
+		
+		LineMerge merge = LineMerge.merge(LineDiff.splitLines(splitPointContents),
+				LineDiff.splitLines(currentBranchContents), LineDiff.splitLines(mergingBranchContents),
+				"HEAD", "split point", mergingBranch);
+		writeContents(conflictedFile, LineDiff.joinLines(merge.getMergedLines()));
+		Repository.add(conflictedFile.getPath(), false);
+		
+		if (merge.getConflicts() == 0) {
+			System.out.println("Merged " + conflictedFile.getPath() + " without conflicts.");
+		} else {
+			System.out.println("Encountered a merge conflict. Check the contents of " + conflictedFile.getPath() +
+					" to resolve.");
+		}
+		return true;
+	}
+	
 	/** Saves the tracking file of the current branch and loads the tracking file (if it exists)
 	 * of the branch awe are switching into. */
 	private static void saveAndLoadTrackingFile(String branchName) {
 		File currentBranchTrackingFile = join(BRANCH_TRACKING, Branch.getCurrentBranch());
-		if (TRACKING_FILE.exists()) {
-			writeContents(currentBranchTrackingFile, readContentsAsString(TRACKING_FILE));
+		if (!FileRegistry.tracked().isEmpty()) {
+			FileRegistry.tracked().writeTo(currentBranchTrackingFile);
 		}
 		
 		File checkoutBranchTrackingFile = join(BRANCH_TRACKING, branchName);
 		if (checkoutBranchTrackingFile.exists()) {
-			writeContents(TRACKING_FILE, readContentsAsString(checkoutBranchTrackingFile));
+			FileRegistry.tracked().replaceWith(FileRegistry.readPaths(checkoutBranchTrackingFile));
 		}
 	}
 	
 	/** Checks if repo head can be switched to the given branch name. */
 	private static void switchToBranch(String branchName, Commit headCommitOfBranch) {
-		List<String> untrackedFiles = Repository.getUntrackedFiles(CWD, new ArrayList<>());
+		Set<String> untrackedFiles = WorkingTree.snapshot().getUntrackedFiles();
 		
 		Map<String, String> filesOfHeadCommitOfBranch = headCommitOfBranch.getStagedFilesCommit();
 		Repository.checkPendingOrUntrackedChanges(untrackedFiles, filesOfHeadCommitOfBranch);
@@ -312,11 +325,10 @@ public class Branch {
 	/** Called when branch can be switched successfully. */
 	private static void successfulSwitchToBranch(String branchName,
 	                                             Map<String, String> filesOfHeadCommitOfBranch) {
-		Repository.replaceFilesInWorkingDirectory(filesOfHeadCommitOfBranch);
-		if (INDEX_FILE.exists()) {
+		Repository.checkoutFiles(Branch.getCurrentBranchHead().getStagedFilesCommit(), filesOfHeadCommitOfBranch);
+		if (FileStager.getNumberOfStagedFiles() >= 1) {
 			FileStager.clearStagingArea();
 		}
-		Repository.deleteTrackedFiles(filesOfHeadCommitOfBranch);
 		saveAndLoadTrackingFile(branchName);
 		Repository.updateRepositoryHead(branchName);
 		
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static gitlet.Utils.*;
+
+/**
+ * Writes the blobs of a commit into the working directory. The files to write are collected
+ * first, then their directories are created in path order on the calling thread, and the blobs are
+ * read and written on a bounded pool of threads. Errors are reported after every file has been
+ * handled, for the first failing path in path order, so a checkout fails the same way no matter
+ * how the threads were scheduled.
+ *
+ * The number of threads is read from the GITLET_CHECKOUT_THREADS environment variable, and
+ * defaults to the number of available processors.
+ *
+ * @author Vipul Sharma
+ */
+public class CheckoutWriter {
+	/** Environment variable that sets the number of threads files are written on. */
+	public static final String PARALLELISM_VARIABLE = "GITLET_CHECKOUT_THREADS";
+
+	/** Maps the relative path of every file to write to the name of its blob. */
+	private final SortedMap<String, String> filesToWrite = new TreeMap<>();
+
+	/** Relative paths of the files that are only written if their working copy differs from
+	 * their blob. */
+	private final SortedSet<String> filesToVerify = new TreeSet<>();
+
+	/** Relative paths of the files whose working copy already had the contents of their blob, so
+	 * they were not written. Filled in by the write tasks. */
+	private final Set<String> unchangedFiles = ConcurrentHashMap.newKeySet();
+
+	/** Adds a file to be written with the contents of the given blob. */
+	public void add(String fileRelativePath, String blobName) {
+		filesToWrite.put(fileRelativePath, blobName);
+		filesToVerify.remove(fileRelativePath);
+	}
+
+	/** Adds a file to be written with the contents of the given blob, unless its working copy
+	 * already has those contents. */
+	public void addIfChanged(String fileRelativePath, String blobName) {
+		filesToWrite.put(fileRelativePath, blobName);
+		filesToVerify.add(fileRelativePath);
+	}
+
+	/** Writes all the added files and returns the number of files that were actually written. */
+	public int write() {
+		for (var fileAndBlob : filesToWrite.entrySet()) {
+			if (!BlobStore.exists(fileAndBlob.getValue())) {
+				exitWithError("Unable to check out file at " + fileAndBlob.getKey() + ". Blob "
+						+ fileAndBlob.getValue() + " does not exist.", false);
+			}
+		}
+		createDirectories();
+
+		List<String> paths = new ArrayList<>(filesToWrite.keySet());
+		List<Future<FileStat>> results = new ArrayList<>(paths.size());
+		int threads = Math.min(getParallelism(), paths.size());
+
+		if (threads <= 1) {
+			for (String fileRelativePath : paths) {
+				results.add(runInline(writeTask(fileRelativePath)));
+			}
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				for (String fileRelativePath : paths) {
+					results.add(pool.submit(writeTask(fileRelativePath)));
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		int writtenFiles = 0;
+		String firstError = null;
+		for (int i = 0; i < paths.size(); i++) {
+			try {
+				FileStat fileStat = results.get(i).get();
+				if (fileStat != null) {
+					FileStager.cacheFileStat(paths.get(i), fileStat);
+				}
+				if (!unchangedFiles.contains(paths.get(i))) {
+					writtenFiles += 1;
+				}
+			} catch (ExecutionException excp) {
+				if (excp.getCause() instanceof CommandExit) {
+					throw (CommandExit) excp.getCause();
+				}
+				if (firstError == null) {
+					firstError = "Unable to check out file at " + paths.get(i) + ". "
+							+ excp.getCause().getMessage();
+				}
+			} catch (InterruptedException excp) {
+				Thread.currentThread().interrupt();
+				exitWithError("Checkout was interrupted.", false);
+			}
+		}
+		if (firstError != null) {
+			exitWithError(firstError, false);
+		}
+		return writtenFiles;
+	}
+
+	/** Returns the number of threads files are written on. */
+	static int getParallelism() {
+		String configured = System.getenv(PARALLELISM_VARIABLE);
+		if (configured != null) {
+			try {
+				return Math.max(1, Integer.parseInt(configured.trim()));
+			} catch (NumberFormatException excp) {
+				exitWithError(PARALLELISM_VARIABLE + " must be a number.", false);
+			}
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Creates the parent directories of all the files to write, each one once, in path order. */
+	private void createDirectories() {
+		SortedSet<File> directories = new TreeSet<>();
+		for (String fileRelativePath : filesToWrite.keySet()) {
+			File parentDirectory = new File(fileRelativePath).getAbsoluteFile().getParentFile();
+			if (parentDirectory != null) {
+				directories.add(parentDirectory);
+			}
+		}
+		for (File directory : directories) {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				exitWithError("Could not create directory - " + directory.getName(), false);
+			}
+		}
+	}
+
+	/** Returns a task that writes the file at the given path and returns its new stat data along
+	 * with its hash, or null if there is none to record. A file whose working copy already has the
+	 * contents of its blob is not written. The task only reads the stat cache, the new stat data is
+	 * recorded on the calling thread. */
+	private Callable<FileStat> writeTask(String fileRelativePath) {
+		String blobName = filesToWrite.get(fileRelativePath);
+		boolean verify = filesToVerify.contains(fileRelativePath);
+
+		return () -> {
+			File file = new File(fileRelativePath);
+			if (verify && file.isFile()) {
+				FileStat currentStat = FileStat.of(file);
+				String currentHash = FileStager.getCachedHash(fileRelativePath, currentStat);
+				boolean cached = currentHash != null;
+				if (!cached) {
+					currentHash = BlobStore.hashFile(file);
+				}
+				if (blobName.equals(currentHash)) {
+					unchangedFiles.add(fileRelativePath);
+					return cached || currentStat == null ? null : currentStat.withHash(currentHash);
+				}
+			}
+			BlobStore.restoreBlob(blobName, file);
+			FileStat fileStat = FileStat.of(file);
+			return fileStat == null ? null : fileStat.withHash(blobName);
+		};
+	}
+
+	/** Runs the given task on the calling thread, returning its outcome as a completed future. */
+	private static Future<FileStat> runInline(Callable<FileStat> task) {
+		FutureTask<FileStat> future = new FutureTask<>(task);
+		future.run();
+		return future;
+	}
+}
@@ -0,0 +1,15 @@
+package gitlet;
+
+/** Thrown by exitWithError to end the current command once its error message has been printed.
+ *  Main exits when it catches one, while the daemon only ends the command and keeps serving.
+ *  @author Vipul Sharma
+ */
+class CommandExit extends RuntimeException {
+    
+    
+    /** A CommandExit for a command whose error message has been printed. */
+    CommandExit() {
+        super(null, null, false, false);
+    }
+    
+}
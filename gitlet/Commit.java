@@ -1,7 +1,15 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 import static gitlet.Utils.*;
@@ -9,11 +17,30 @@ import static gitlet.Utils.*;
 /** Represents a gitlet commit object.
  *  This class contains instance variables and methods that help in the representation
  *  of a Commit and its metadata. A Commit's metadata includes its message, its timestamp,
- *  a reference to its parent commit and a list of file references.
+ *  a reference to its parent commit and the hash of the tree that holds its file references.
+ *
+ *  Commits are stored in a versioned binary encoding, and the hash of a commit is the sha1-hash
+ *  of that encoding. Commits written by older versions of Gitlet as serialized Java objects are
+ *  still read, which is the only reason this class is still Serializable.
  *
  *  @author Vipul Sharma
  */
 public class Commit implements Serializable {
+    /** Keeps commits serialized by older versions of Gitlet readable. */
+    private static final long serialVersionUID = -46575931849016989L;
+
+    /** Magic bytes at the start of every encoded commit ("GCMT"). */
+    private static final int COMMIT_SIGNATURE = 0x47434d54;
+
+    /** Version of the commit encoding written by this version of Gitlet. */
+    private static final int COMMIT_FORMAT_VERSION = 2;
+
+    /** Version of the commit encoding that listed every file instead of a tree. */
+    private static final int FILE_LIST_FORMAT_VERSION = 1;
+
+    /** First byte of a commit written as a serialized Java object. */
+    private static final int SERIALIZED_COMMIT_MAGIC = 0xac;
+
     /** The message of this Commit. */
     private String message;
     
@@ -29,8 +56,12 @@ public class Commit implements Serializable {
     /** Commit's sha1-hash */
     private String hash;
     
-    /** Keeps track of what files this commit is tracking. */
+    /** Keeps track of what files this commit is tracking. Loaded lazily out of the tree of this
+     *  commit, only commits written before trees existed store it directly. */
     private Map<String, String> stagedFiles;
+
+    /** hash of the root tree of this Commit. */
+    private String tree;
     
     public Commit(String message, String parent) {
         this.message = message;
@@ -45,112 +76,253 @@ public class Commit implements Serializable {
 
         this.createCommit();
     }
+
+    /** Creates a commit on top of the given parents that tracks the files of the given tree. */
+    private Commit(String message, String parent, String parentTwo, String tree) {
+        this.message = message;
+        this.parent = parent;
+        this.parentTwo = parentTwo;
+        this.tree = tree;
+        this.timestamp = new Date();
+
+        this.createCommit();
+    }
+
+    /** Rebuilds a commit that has already been written. */
+    private Commit(String hash, String message, Date timestamp, String parent, String parentTwo,
+                   String tree, Map<String, String> stagedFiles) {
+        this.hash = hash;
+        this.message = message;
+        this.timestamp = timestamp;
+        this.parent = parent;
+        this.parentTwo = parentTwo;
+        this.tree = tree;
+        this.stagedFiles = stagedFiles;
+    }
     
-    /** Adds the blobs of the files in the staging area to a commit file. */
+    /** Writes the tree of this commit if needed, and then the commit itself to a commit file. */
     public void createCommit() {
-        File commitFile = Utils.join(COMMIT_OBJECT_DIR, "commitFile");
-    
-        /* if this is the initial commit, there is no need to add staged files, that happens
-         in the else case, here we create the commit objects directory. */
+        /* if this is the initial commit, we create the commit objects directory. */
         if (!COMMIT_OBJECT_DIR.exists()) {
             if (!COMMIT_OBJECT_DIR.mkdir()) {
                 exitWithError("Could not initialize Gitlet objects directory.", false);
             }
-        } else if (FileStager.getNumberOfStagedFiles() >= 1) {
-            this.stagedFiles.putAll(Objects.requireNonNull(FileStager.getStagedFiles()));
+        }
+        if (this.tree == null) {
+            this.tree = Tree.writeTree(this.stagedFiles);
         }
         
-        // write commit object to commit file
-        writeObject(commitFile, this);
-        // Calculate hash for this commit
-        commitHash(commitFile);
-        // Rename the object for this commit
-        renameCommitObject(commitFile);
+        // Encode this commit once, its hash is the hash of the encoding
+        byte[] encodedCommit = encode();
+        this.hash = sha1(encodedCommit);
+        writeCommitObject(encodedCommit);
+        ObjectCache.COMMITS.put(this.hash, this);
+        CommitGraph.addCommit(this);
     }
     
-    /** Clones the head commit of the current branch, modifies its properties. */
+    /** Creates a child of the head commit of the current branch. Only the trees of the
+     *  directories that contain staged or removed files are rewritten, the rest are shared with the
+     *  head commit. */
     public static Commit cloneAndModifyCommit(String hash, String message,
                                               String mergingBranchHeadHash, boolean mergeCommit) {
-        // Clone the head commit
-        Commit newCommit = getCommitFromHash(hash);
-        
-        // Modify its properties
-        newCommit.setMessage(message);
-        newCommit.setDate(new Date());
-        newCommit.setParent(hash);
-        
-        if (mergeCommit) {
-            newCommit.setParentTwo(mergingBranchHeadHash);
-        } else if (newCommit.getParentTwo() != null) {
-            newCommit.setParentTwo(null);
-        }
-    
-        if (UNTRACKING_FILE.exists()) {
-            FileStager.modifyStagedFilesUsingRemovedFiles(newCommit.stagedFiles);
+        Commit headCommit = getCommitFromHash(hash);
+
+        // Files staged for removal map to null, staged files map to their new blobs
+        Map<String, String> changes = new HashMap<>();
+        FileStager.modifyStagedFilesUsingRemovedFiles(changes);
+        if (FileStager.getNumberOfStagedFiles() >= 1) {
+            changes.putAll(Objects.requireNonNull(FileStager.getStagedFiles()));
         }
-        newCommit.createCommit();
-        
-        return newCommit;
-    }
-    
-    /** Calculates the sha1-hash for this commit based on the contents of the commit file
-     *  that contains staging area details and commit metadata. */
-    public void commitHash(File commitFile) {
-        this.hash = sha1(readContentsAsString(commitFile));
-        writeObject(commitFile, this);
+
+        String newTree = Tree.updateTree(headCommit.getTreeHash(), changes);
+        return new Commit(message, hash, mergeCommit ? mergingBranchHeadHash : null, newTree);
     }
     
-    /** Creates a file with the commit's hash as its name. This file will contain the commit object. */
-    public void renameCommitObject(File commitFile) {
+    /** Creates a file with the commit's hash as its name that contains the encoded commit. The
+     *  commit is written to a temporary file first, so a commit file is never seen half-written. */
+    private void writeCommitObject(byte[] encodedCommit) {
         File commitObject = Utils.join(COMMIT_OBJECT_DIR, this.hash);
-        
-        if (!commitFile.renameTo(commitObject)) {
+
+        try {
+            File commitFile = Files.createTempFile(COMMIT_OBJECT_DIR.toPath(), "commit-", ".tmp")
+                    .toFile();
+            writeContents(commitFile, (Object) encodedCommit);
+            Files.move(commitFile.toPath(), commitObject.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Transaction.recordObject(commitObject);
+        } catch (IOException excp) {
             exitWithError("Could not create the commit. This seems like a mistake on our part.",
                     false);
         }
     }
+
+    /** Returns the canonical encoding of this commit: its metadata followed by the hash of its
+     *  tree, so that equal commits always encode to the same bytes. */
+    private byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(COMMIT_SIGNATURE);
+            out.writeByte(COMMIT_FORMAT_VERSION);
+            out.writeLong(this.timestamp.getTime());
+            writeHash(out, this.parent);
+            writeHash(out, this.parentTwo);
+            writeString(out, this.message);
+            out.write(fromHexString(this.tree));
+        } catch (IOException excp) {
+            throw error("Internal error encoding commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the commit with the given hash out of its encoding. */
+    private static Commit decode(String commitHash, byte[] encodedCommit) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encodedCommit));
+        if (in.readInt() != COMMIT_SIGNATURE) {
+            throw new IOException("Unknown commit format.");
+        }
+
+        int formatVersion = in.readUnsignedByte();
+        Date timestamp = new Date(in.readLong());
+        String parent = readHash(in);
+        String parentTwo = readHash(in);
+        String message = readString(in);
+
+        if (formatVersion == COMMIT_FORMAT_VERSION) {
+            byte[] treeHash = new byte[UID_LENGTH / 2];
+            in.readFully(treeHash);
+            return new Commit(commitHash, message, timestamp, parent, parentTwo,
+                    toHexString(treeHash), null);
+        } else if (formatVersion != FILE_LIST_FORMAT_VERSION) {
+            throw new IOException("Unknown commit format.");
+        }
+
+        int numberOfFiles = in.readInt();
+        Map<String, String> stagedFiles = new HashMap<>(Math.max(16, numberOfFiles * 4 / 3 + 1));
+        byte[] blobHash = new byte[UID_LENGTH / 2];
+        for (int i = 0; i < numberOfFiles; i++) {
+            String fileRelativePath = readString(in);
+            in.readFully(blobHash);
+            stagedFiles.put(fileRelativePath, toHexString(blobHash));
+        }
+
+        return new Commit(commitHash, message, timestamp, parent, parentTwo, null, stagedFiles);
+    }
+
+    /** Reads a commit from its file, which can be either encoded or a serialized Java object. */
+    public static Commit readCommit(File commitFile) {
+        return ObjectCache.COMMITS.get(commitFile.getName(), commitHash -> readCommitFile(commitFile));
+    }
+
+    /** Reads the commit in the given commit file, without looking in the cache of commits. */
+    private static Commit readCommitFile(File commitFile) {
+        byte[] contents = readContents(commitFile);
+
+        if (isSerializedCommit(contents)) {
+            return readObject(commitFile, Commit.class);
+        }
+        try {
+            return decode(commitFile.getName(), contents);
+        } catch (IOException excp) {
+            exitWithError(CORRUPTED_REPO, false);
+            return null;
+        }
+    }
+
+    /** Reads the commit in the given commit file, without looking in the cache of commits, or
+     *  returns null if the file cannot be decoded. */
+    static Commit readCommitOrNull(File commitFile) {
+        byte[] contents = readContents(commitFile);
+        try {
+            if (isSerializedCommit(contents)) {
+                return readObject(commitFile, Commit.class);
+            }
+            return decode(commitFile.getName(), contents);
+        } catch (IOException | IllegalArgumentException excp) {
+            return null;
+        }
+    }
+
+    /** Returns true if the given contents of a commit file are a serialized Java object, which
+     *  is not named by the hash of its contents. */
+    static boolean isSerializedCommit(byte[] contents) {
+        return contents.length > 0 && (contents[0] & 0xff) == SERIALIZED_COMMIT_MAGIC;
+    }
+
+    /** Writes a hash that may be null. */
+    private static void writeHash(DataOutputStream out, String hash) throws IOException {
+        out.writeBoolean(hash != null);
+        if (hash != null) {
+            out.write(fromHexString(hash));
+        }
+    }
+
+    /** Reads a hash written by writeHash. */
+    private static String readHash(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] hash = new byte[UID_LENGTH / 2];
+        in.readFully(hash);
+        return toHexString(hash);
+    }
+
+    /** Writes a String as its length followed by its UTF-8 bytes. */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a String written by writeString. */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
     
     /** Returns the commit given its hash. */
     public static Commit getCommitFromHash(String commitHash) {
         commitHash = searchCommitUsingTruncatedHash(commitHash);
     
-        File commitFile = join(COMMIT_OBJECT_DIR, commitHash);
-        if (!commitFile.exists()) {
-            exitWithError("Commit with hash " + commitHash + " does not exist.", false);
-        }
-        return readObject(commitFile, Commit.class);
+        return ObjectCache.COMMITS.get(commitHash, hash -> {
+            File commitFile = join(COMMIT_OBJECT_DIR, hash);
+            if (!commitFile.exists()) {
+                exitWithError("Commit with hash " + hash + " does not exist.", false);
+            }
+            return readCommitFile(commitFile);
+        });
     }
     
-    /** Returns the complete hash if an incomplete hash is provided. */
+    /** Returns the complete hash if an incomplete hash is provided. The hash is looked up in the
+     * commit index, and an incomplete hash that more than one commit starts with is an error. */
     public static String searchCommitUsingTruncatedHash(String searchHash) {
         if (searchHash.length() < MINIMUM_UID_LENGTH || searchHash.length() > UID_LENGTH) {
             exitWithError("Length of the provided hash is not ideal.", false);
         }
+        if (!searchHash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return searchHash;
+        }
     
-        File[] commitFilesList = COMMIT_OBJECT_DIR.listFiles();
-        
-        for (File commitFile : Objects.requireNonNull(commitFilesList)) {
-            String commitHash = commitFile.getName();
-            if (commitHash.startsWith(searchHash)) {
-                searchHash = commitHash;
-                break;
-            }
+        List<String> matchingHashes = CommitGraph.load().findByPrefix(searchHash.toLowerCase(), 2);
+        if (matchingHashes.size() > 1) {
+            exitWithError("Commit hash " + searchHash + " is ambiguous.", false);
         }
-        return searchHash;
+        return matchingHashes.isEmpty() ? searchHash : matchingHashes.get(0);
     }
     
     /** Returns true if the given file path was in any earlier commit. */
     public static boolean isFileAlreadyCommitted(String fileRelativePath) {
-        String commitHash = Branch.getCurrentBranchHeadHash();
+        CommitGraph graph = CommitGraph.load();
+        int position = graph.positionOf(Branch.getCurrentBranchHeadHash());
+        Set<String> visitedTrees = new HashSet<>();
     
-        while (commitHash != null) {
-            File commitFile = join(COMMIT_OBJECT_DIR, commitHash);
-            Commit commitObject = readObject(commitFile, Commit.class);
+        while (position != CommitGraph.NO_PARENT) {
+            String treeHash = graph.treeAt(position);
         
-            if (commitObject.stagedFiles.containsKey(fileRelativePath)) {
+            if (visitedTrees.add(treeHash) && Tree.lookup(treeHash, fileRelativePath) != null) {
                 return true;
             }
-            commitHash = commitObject.getParent();
+            position = graph.parentOne(position);
         }
         
         return false;
@@ -159,7 +331,7 @@ public class Commit implements Serializable {
     /** Returns true if the given file path is in the head commit. */
     public static boolean isFileInHeadCommit(String fileRelativePath, String fileSha) {
         Commit currentCommit = Branch.getCurrentBranchHead();
-        String headCommitFileHash = currentCommit.stagedFiles.get(fileRelativePath);
+        String headCommitFileHash = currentCommit.getFileHash(fileRelativePath);
         return fileSha.equals(headCommitFileHash);
     }
     
@@ -169,8 +341,11 @@ public class Commit implements Serializable {
                         Repository.getNumberOfUntrackedFiles() + " (removal) update(s) to the repository.");
         
         Branch.updateBranchHead(newCommitHash);
+        Commit newCommit = getCommitFromHash(newCommitHash);
+        MessageIndex.add(newCommit);
+        CommitJournal.append(newCommit);
         FileStager.clearStagingArea();
-        Repository.deleteFileIfEmpty(UNTRACKING_FILE, true);
+        FileRegistry.removed().clear();
         
         System.out.println("[" + branchName + " " +
                 truncateString(newCommitHash, 7) + "] " + message);
@@ -178,9 +353,12 @@ public class Commit implements Serializable {
     
     /** Prints a log of all commits on this branch. */
     public static void logCommitsInfo(String commitHash) {
-        while (commitHash != null) {
-            File commitFile = join(COMMIT_OBJECT_DIR, commitHash);
-            Commit commitObject = readObject(commitFile, Commit.class);
+        CommitGraph graph = CommitGraph.load();
+        int position = graph.positionOf(commitHash);
+
+        while (position != CommitGraph.NO_PARENT) {
+            File commitFile = join(COMMIT_OBJECT_DIR, graph.hashAt(position));
+            Commit commitObject = readCommit(commitFile);
         
             System.out.println(TRIPLE_EQUALS + "\ncommit " + commitObject.getHash());
             
@@ -189,7 +367,7 @@ public class Commit implements Serializable {
             }
             System.out.println("Date: " + commitObject.getDate() + "\n" + commitObject.getMessage() + "\n");
             
-            commitHash = commitObject.getParent();
+            position = graph.parentOne(position);
         }
     }
     
@@ -218,8 +396,8 @@ public class Commit implements Serializable {
         return this.parent;
     }
     
-    /** */
-    private String getParentTwo() {
+    /** Returns commit's parent two in case of merge commit. */
+    public String getParentTwo() {
         return this.parentTwo;
     }
     
@@ -238,21 +416,48 @@ public class Commit implements Serializable {
         return this.hash;
     }
     
-    /** Returns map object of a commit's staged files. */
+    /** Returns map object of a commit's staged files. The map of a tree is shared by every commit
+     *  with that tree, through the cache of manifests, and cannot be modified. */
     public Map<String, String> getStagedFilesCommit() {
-        return this.stagedFiles;
+        if (this.stagedFiles != null) {
+            return this.stagedFiles;
+        }
+        return ObjectCache.MANIFESTS.get(this.tree,
+                treeHash -> Collections.unmodifiableMap(Tree.flatten(treeHash)));
+    }
+
+    /** Returns the hash of the root tree of this commit as it was written, null for commits
+     *  written before trees existed. */
+    String getStoredTreeHash() {
+        return this.tree;
+    }
+
+    /** Returns the blob of the given file in this commit, or null if the commit does not track it. */
+    public String getFileHash(String fileRelativePath) {
+        if (this.stagedFiles != null) {
+            return this.stagedFiles.get(fileRelativePath);
+        }
+        return Tree.lookup(this.tree, fileRelativePath);
+    }
+
+    /** Returns the hash of the root tree of this commit. Commits written before trees existed get
+     *  their tree written on first use. */
+    public String getTreeHash() {
+        if (this.tree == null) {
+            this.tree = Tree.writeTree(this.stagedFiles);
+        }
+        return this.tree;
     }
     
     /** Returns a list of all the ancestor commit's hash in a branch. */
     public static List<String> getCommitAncestors(String commitHash) {
         List<String> ancestorsList = new ArrayList<>();
+        CommitGraph graph = CommitGraph.load();
+        int position = graph.positionOf(commitHash);
         
-        while (commitHash != null) {
-            ancestorsList.add(commitHash);
-            File commitFile = join(COMMIT_OBJECT_DIR, commitHash);
-            Commit commitObject = readObject(commitFile, Commit.class);
-            
-            commitHash = commitObject.getParent();
+        while (position != CommitGraph.NO_PARENT) {
+            ancestorsList.add(graph.hashAt(position));
+            position = graph.parentOne(position);
         }
         
         return ancestorsList;
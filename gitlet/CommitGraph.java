@@ -0,0 +1,355 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the commit-graph file, which lets history be walked without reading commit objects.
+ * The file is a header followed by one fixed-width record per commit, appended as commits are
+ * created: the hash of the commit, the hash of its root tree, the positions of its parents in the
+ * file, its generation number and its timestamp. Parents are always recorded before their
+ * children, and the generation number of a commit is one more than the largest generation number
+ * of its parents, so a commit can never be an ancestor of a commit with a lower generation number.
+ * Commits are found by their hashes through the commit index, so loading the commit-graph does not
+ * depend on the number of commits in it.
+ *
+ * @author Vipul Sharma
+ */
+public class CommitGraph {
+	/** Magic bytes at the start of the commit-graph file ("GCGR"). */
+	private static final int GRAPH_SIGNATURE = 0x47434752;
+
+	/** Version of the commit-graph layout written by this version of Gitlet. */
+	private static final int GRAPH_FORMAT_VERSION = 1;
+
+	/** Size of the header, the signature and the version. */
+	private static final int HEADER_SIZE = 8;
+
+	/** Size of a record: two hashes, two parent positions, a generation number and a timestamp. */
+	private static final int RECORD_SIZE = 2 * (UID_LENGTH / 2) + 3 * Integer.BYTES + Long.BYTES;
+
+	/** Number of commits appended after the commit index was written that causes it to be rewritten. */
+	private static final int MAX_UNINDEXED_COMMITS = 256;
+
+	/** Parent position of a commit that has no such parent. */
+	public static final int NO_PARENT = -1;
+
+	/** The commit-graph of the repository, loaded lazily once per command. */
+	private static CommitGraph loadedGraph;
+
+	/** The records of the commit-graph file. */
+	private MappedByteBuffer records;
+
+	/** Number of commits in the commit-graph. */
+	private int size;
+
+	/** The commit index of the first commits of the commit-graph, null if it has to be rebuilt. */
+	private CommitIndex index;
+
+	/** Maps the hash of every commit appended after the commit index was written to its position. */
+	private final Map<String, Integer> unindexedPositions = new HashMap<>();
+
+	private CommitGraph() {
+		if (!COMMIT_GRAPH_FILE.exists()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(GRAPH_SIGNATURE).putInt(GRAPH_FORMAT_VERSION);
+			writeContentsAtomically(COMMIT_GRAPH_FILE, header.array());
+		}
+		mapRecords();
+
+		if (records.getInt(0) != GRAPH_SIGNATURE || records.getInt(Integer.BYTES) != GRAPH_FORMAT_VERSION) {
+			exitWithError(CORRUPTED_REPO, false);
+		}
+
+		index = CommitIndex.read();
+		if (index != null && index.size() > size) {
+			index = null;
+		}
+		for (int position = index == null ? 0 : index.size(); position < size; position++) {
+			unindexedPositions.put(hashAt(position), position);
+		}
+	}
+
+	/** Returns the commit-graph of the repository. Commits that are missing from the commit-graph,
+	 * such as those created before it existed, are added as soon as they are looked up. */
+	public static CommitGraph load() {
+		if (loadedGraph == null) {
+			loadedGraph = new CommitGraph();
+			if (loadedGraph.index == null) {
+				loadedGraph.rebuildIndex();
+			}
+		}
+		return loadedGraph;
+	}
+
+	/** Returns true if the commit-graph and its commit index exist and hold the head of every
+	 * branch, so a command that only reads history never has to add commits to them. Records are
+	 * appended in place, which only a command holding the repository alone may do. */
+	public static synchronized boolean isComplete() {
+		if (!COMMIT_GRAPH_FILE.exists() || !COMMIT_INDEX_FILE.exists() || RefStore.hasLegacyHead()) {
+			return false;
+		}
+		CommitGraph graph = loadedGraph != null ? loadedGraph : new CommitGraph();
+		if (graph.index == null) {
+			return false;
+		}
+		for (String branchName : RefStore.branchNames()) {
+			String commitHash = RefStore.read(branchName);
+			if (commitHash != null && graph.findPosition(commitHash) == null) {
+				return false;
+			}
+		}
+		loadedGraph = graph;
+		return true;
+	}
+
+	/** Forgets the loaded commit-graph, so it is read again the next time it is needed. */
+	static void reset() {
+		loadedGraph = null;
+	}
+
+	/** Adds a newly created commit to the commit-graph. */
+	public static void addCommit(Commit commit) {
+		CommitGraph graph = load();
+		if (graph.findPosition(commit.getHash()) == null) {
+			graph.append(commit);
+		}
+	}
+
+	/** Returns the number of commits in the commit-graph. */
+	public int size() {
+		return this.size;
+	}
+
+	/** Returns the position of the commit with the given hash, adding it and its missing ancestors
+	 * to the commit-graph if needed. */
+	public int positionOf(String commitHash) {
+		Integer position = findPosition(commitHash);
+		if (position != null) {
+			return position;
+		}
+
+		// Add missing ancestors before their children, without recursing down long histories
+		Deque<Commit> pendingCommits = new ArrayDeque<>();
+		pendingCommits.push(readCommitObject(commitHash));
+		while (!pendingCommits.isEmpty()) {
+			Commit commit = pendingCommits.peek();
+			String missingParent = null;
+
+			for (String parent : new String[] {commit.getParent(), commit.getParentTwo()}) {
+				if (parent != null && findPosition(parent) == null) {
+					missingParent = parent;
+				}
+			}
+			if (missingParent != null) {
+				pendingCommits.push(readCommitObject(missingParent));
+			} else {
+				pendingCommits.pop();
+				if (findPosition(commit.getHash()) == null) {
+					append(commit);
+				}
+			}
+		}
+		return findPosition(commitHash);
+	}
+
+	/** Returns the hashes of the commits that start with PREFIX, at most LIMIT of them. */
+	public List<String> findByPrefix(String prefix, int limit) {
+		List<String> matches = new ArrayList<>();
+		index.findByPrefix(prefix, matches, limit);
+		for (String commitHash : unindexedPositions.keySet()) {
+			if (matches.size() < limit && commitHash.startsWith(prefix)) {
+				matches.add(commitHash);
+			}
+		}
+		return matches;
+	}
+
+	/** Returns the position of the latest common ancestor of the commits at the given positions,
+	 * following both parents of merge commits, or NO_PARENT if they have none. Both histories are
+	 * walked at the same time, highest generation number first, and every commit is marked with the
+	 * side(s) it was reached from. Every descendant of a commit has a higher generation number, so
+	 * the first commit reached from both sides is a common ancestor that no other common ancestor
+	 * descends from, and commits below its generation number are never visited. */
+	public int mergeBase(int positionOne, int positionTwo) {
+		BitSet reachedFromOne = new BitSet(size);
+		BitSet reachedFromTwo = new BitSet(size);
+		BitSet queued = new BitSet(size);
+		PriorityQueue<Integer> queue = new PriorityQueue<>(Comparator.comparingInt(this::generation)
+				.thenComparingLong(this::timestamp).reversed());
+
+		reachedFromOne.set(positionOne);
+		reachedFromTwo.set(positionTwo);
+		for (int position : new int[] {positionOne, positionTwo}) {
+			if (!queued.get(position)) {
+				queued.set(position);
+				queue.add(position);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			int position = queue.poll();
+			boolean fromOne = reachedFromOne.get(position);
+			boolean fromTwo = reachedFromTwo.get(position);
+			if (fromOne && fromTwo) {
+				return position;
+			}
+
+			for (int parent : new int[] {parentOne(position), parentTwo(position)}) {
+				if (parent == NO_PARENT || ((!fromOne || reachedFromOne.get(parent))
+						&& (!fromTwo || reachedFromTwo.get(parent)))) {
+					continue;
+				}
+				reachedFromOne.set(parent, fromOne || reachedFromOne.get(parent));
+				reachedFromTwo.set(parent, fromTwo || reachedFromTwo.get(parent));
+				if (!queued.get(parent)) {
+					queued.set(parent);
+					queue.add(parent);
+				}
+			}
+		}
+		return NO_PARENT;
+	}
+
+	/** Returns the hash of the commit at the given position. */
+	public String hashAt(int position) {
+		return readHash(recordOffset(position));
+	}
+
+	/** Returns the hash of the root tree of the commit at the given position. */
+	public String treeAt(int position) {
+		return readHash(recordOffset(position) + UID_LENGTH / 2);
+	}
+
+	/** Returns the position of the first parent of the commit at the given position. */
+	public int parentOne(int position) {
+		return records.getInt(recordOffset(position) + UID_LENGTH);
+	}
+
+	/** Returns the position of the merged-in parent of the commit at the given position. */
+	public int parentTwo(int position) {
+		return records.getInt(recordOffset(position) + UID_LENGTH + Integer.BYTES);
+	}
+
+	/** Returns the generation number of the commit at the given position. */
+	public int generation(int position) {
+		return records.getInt(recordOffset(position) + UID_LENGTH + 2 * Integer.BYTES);
+	}
+
+	/** Returns the timestamp of the commit at the given position. */
+	public long timestamp(int position) {
+		return records.getLong(recordOffset(position) + UID_LENGTH + 3 * Integer.BYTES);
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Appends the record of a commit whose parents are already in the commit-graph. */
+	private void append(Commit commit) {
+		int parentOne = commit.getParent() == null ? NO_PARENT : findPosition(commit.getParent());
+		int parentTwo = commit.getParentTwo() == null ? NO_PARENT : findPosition(commit.getParentTwo());
+		int generation = 1 + Math.max(parentOne == NO_PARENT ? 0 : generation(parentOne),
+				parentTwo == NO_PARENT ? 0 : generation(parentTwo));
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.put(fromHexString(commit.getHash())).put(fromHexString(commit.getTreeHash()));
+		record.putInt(parentOne).putInt(parentTwo).putInt(generation);
+		record.putLong(commit.getDate().getTime());
+		record.flip();
+
+		// A record cut short by a crash is overwritten, since size only counts complete records
+		try (FileChannel channel = FileChannel.open(COMMIT_GRAPH_FILE.toPath(), StandardOpenOption.WRITE)) {
+			long offset = recordOffset(size);
+			while (record.hasRemaining()) {
+				offset += channel.write(record, offset);
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+
+		unindexedPositions.put(commit.getHash(), size);
+		mapRecords();
+		if (index != null && unindexedPositions.size() > MAX_UNINDEXED_COMMITS) {
+			writeIndex();
+		}
+	}
+
+	/** Returns the position of the commit with the given hash, or null if it is not in the
+	 * commit-graph. */
+	private Integer findPosition(String commitHash) {
+		Integer position = unindexedPositions.get(commitHash);
+		if (position == null && index != null) {
+			int indexedPosition = index.find(commitHash);
+			position = indexedPosition < 0 ? null : indexedPosition;
+		}
+		return position;
+	}
+
+	/** Adds every commit object to the commit-graph and writes the commit index of all of them.
+	 * This only happens when the commit index is missing, such as in repositories created before it
+	 * existed, so that it covers every commit that abbreviated hashes could refer to. */
+	private void rebuildIndex() {
+		File[] commitFilesList = COMMIT_OBJECT_DIR.listFiles();
+		if (commitFilesList != null) {
+			for (File commitFile : commitFilesList) {
+				if (BlobStore.isBlobName(commitFile.getName())) {
+					positionOf(commitFile.getName());
+				}
+			}
+		}
+		writeIndex();
+	}
+
+	/** Writes the commit index of the whole commit-graph, which no longer leaves any commit
+	 * unindexed. */
+	private void writeIndex() {
+		CommitIndex.write(this);
+		index = CommitIndex.read();
+		unindexedPositions.clear();
+	}
+
+	/** Maps the commit-graph file into memory and counts its complete records. */
+	private void mapRecords() {
+		try (FileChannel channel = FileChannel.open(COMMIT_GRAPH_FILE.toPath(), StandardOpenOption.READ)) {
+			this.records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			this.size = (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns the offset of the record at the given position. */
+	private static int recordOffset(int position) {
+		return HEADER_SIZE + position * RECORD_SIZE;
+	}
+
+	/** Returns the hash stored at the given offset. */
+	private String readHash(int offset) {
+		byte[] hash = new byte[UID_LENGTH / 2];
+		records.get(offset, hash);
+		return toHexString(hash);
+	}
+
+	/** Returns the commit object with the given hash. */
+	private static Commit readCommitObject(String commitHash) {
+		File commitFile = join(COMMIT_OBJECT_DIR, commitHash);
+		if (!commitFile.exists()) {
+			exitWithError("Commit with hash " + commitHash + " does not exist.", false);
+		}
+		return Objects.requireNonNull(Commit.readCommit(commitFile));
+	}
+}
@@ -0,0 +1,159 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the commit index, the hashes of the commits of the commit-graph sorted in a single
+ * file along with their positions in the commit-graph. A fan-out table over the first byte of the
+ * hashes narrows every search down to the hashes that share that byte, which are then binary
+ * searched, so both complete and abbreviated hashes are resolved in O(log n). The index covers the
+ * first commits of the commit-graph, the ones appended since it was written are kept by
+ * CommitGraph and merged into a new index once there are enough of them.
+ *
+ * @author Vipul Sharma
+ */
+public class CommitIndex {
+	/** Magic bytes at the start of the commit index ("GCIX"). */
+	private static final int INDEX_SIGNATURE = 0x47434958;
+
+	/** Version of the commit index layout written by this version of Gitlet. */
+	private static final int INDEX_FORMAT_VERSION = 1;
+
+	/** Size of a hash in bytes. */
+	private static final int HASH_SIZE = UID_LENGTH / 2;
+
+	/** Size of the header, the signature, the version and the number of covered commits. */
+	private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+	/** Size of the fan-out table. */
+	private static final int FANOUT_SIZE = 256 * Integer.BYTES;
+
+	/** The contents of the commit index file. */
+	private final ByteBuffer contents;
+
+	/** Number of commits in the index, which are the first commits of the commit-graph. */
+	private final int size;
+
+	private CommitIndex(ByteBuffer contents) {
+		this.contents = contents;
+		this.size = contents.getInt(2 * Integer.BYTES);
+	}
+
+	/** Returns the commit index, or null if it does not exist or is not valid. */
+	public static CommitIndex read() {
+		if (!COMMIT_INDEX_FILE.exists()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(COMMIT_INDEX_FILE.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (channel.size() < HEADER_SIZE + FANOUT_SIZE || contents.getInt(0) != INDEX_SIGNATURE
+					|| contents.getInt(Integer.BYTES) != INDEX_FORMAT_VERSION) {
+				return null;
+			}
+			return new CommitIndex(contents);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Writes the commit index of the whole commit-graph. */
+	public static void write(CommitGraph graph) {
+		int size = graph.size();
+		byte[][] hashes = new byte[size][];
+		Integer[] positions = new Integer[size];
+		for (int position = 0; position < size; position++) {
+			hashes[position] = fromHexString(graph.hashAt(position));
+			positions[position] = position;
+		}
+		Arrays.sort(positions, (one, two) -> Arrays.compareUnsigned(hashes[one], hashes[two]));
+
+		ByteBuffer contents = ByteBuffer.allocate(HEADER_SIZE + FANOUT_SIZE
+				+ size * (HASH_SIZE + Integer.BYTES));
+		contents.putInt(INDEX_SIGNATURE).putInt(INDEX_FORMAT_VERSION).putInt(size);
+		int[] fanout = new int[256];
+		for (byte[] hash : hashes) {
+			fanout[hash[0] & 0xff] += 1;
+		}
+		for (int i = 0, count = 0; i < fanout.length; i++) {
+			count += fanout[i];
+			contents.putInt(count);
+		}
+		for (int position : positions) {
+			contents.put(hashes[position]);
+		}
+		for (int position : positions) {
+			contents.putInt(position);
+		}
+
+		writeContentsAtomically(COMMIT_INDEX_FILE, contents.array());
+	}
+
+	/** Returns the number of commits in the index. */
+	public int size() {
+		return this.size;
+	}
+
+	/** Returns the commit-graph position of the commit with the given complete hash, or -1 if the
+	 * commit is not in the index. */
+	public int find(String commitHash) {
+		int index = lowerBound(commitHash);
+		if (index < size && hashAt(index).equals(commitHash)) {
+			return positionAt(index);
+		}
+		return -1;
+	}
+
+	/** Adds to MATCHES the complete hashes of the indexed commits that start with PREFIX, stopping
+	 * once MATCHES holds LIMIT hashes. */
+	public void findByPrefix(String prefix, List<String> matches, int limit) {
+		for (int index = lowerBound(prefix); index < size && matches.size() < limit; index++) {
+			String commitHash = hashAt(index);
+			if (!commitHash.startsWith(prefix)) {
+				break;
+			}
+			matches.add(commitHash);
+		}
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns the index of the first hash that is not smaller than the given hash or prefix. */
+	private int lowerBound(String hashOrPrefix) {
+		int firstByte = Integer.parseInt(hashOrPrefix.substring(0, 2), 16);
+		int low = firstByte == 0 ? 0 : fanoutAt(firstByte - 1);
+		int high = fanoutAt(firstByte);
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (hashAt(mid).compareTo(hashOrPrefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/** Returns the number of hashes whose first byte is less than or equal to the given byte. */
+	private int fanoutAt(int firstByte) {
+		return contents.getInt(HEADER_SIZE + firstByte * Integer.BYTES);
+	}
+
+	/** Returns the hash at the given index. */
+	private String hashAt(int index) {
+		byte[] hash = new byte[HASH_SIZE];
+		contents.get(HEADER_SIZE + FANOUT_SIZE + index * HASH_SIZE, hash);
+		return toHexString(hash);
+	}
+
+	/** Returns the commit-graph position of the hash at the given index. */
+	private int positionAt(int index) {
+		return contents.getInt(HEADER_SIZE + FANOUT_SIZE + size * HASH_SIZE + index * Integer.BYTES);
+	}
+}
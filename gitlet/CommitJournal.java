@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the commit journal, a single append-only file with the hash, date and message of
+ * every commit in the order they were created. global-log reads it from start to end, one record
+ * at a time, so it never reads a commit object and never holds more than one record in memory.
+ * Repositories created before the journal existed get it built from their commit objects, ordered
+ * by date, the first time it is needed.
+ *
+ * @author Vipul Sharma
+ */
+public class CommitJournal {
+	/** Magic bytes at the start of the commit journal ("GJRN"). */
+	private static final int JOURNAL_SIGNATURE = 0x474a524e;
+
+	/** Version of the commit journal layout written by this version of Gitlet. */
+	private static final int JOURNAL_FORMAT_VERSION = 1;
+
+	/** Size of a hash in bytes. */
+	private static final int HASH_SIZE = UID_LENGTH / 2;
+
+	/** Longest message a record may have, anything longer is the tail of a cut-short record. */
+	private static final int MAX_MESSAGE_LENGTH = 1 << 24;
+
+	/** Size of the buffer the journal is read through. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Appends a newly created commit to the journal. */
+	public static void append(Commit commit) {
+		if (!COMMIT_JOURNAL_FILE.isFile()) {
+			// the new commit is already in the commit objects the journal is built from
+			rebuild();
+			return;
+		}
+		try (FileOutputStream out = new FileOutputStream(COMMIT_JOURNAL_FILE, true)) {
+			out.write(record(commit));
+		} catch (IOException excp) {
+			exitWithError("Unable to update the commit journal - " + excp.getMessage(), false);
+		}
+	}
+
+	/** Builds the journal again from all the commit objects, ordered by date. */
+	public static void rebuild() {
+		List<Commit> commits = new ArrayList<>();
+		for (String commitHash : Objects.requireNonNullElse(plainFilenamesIn(COMMIT_OBJECT_DIR),
+				List.<String>of())) {
+			if (BlobStore.isBlobName(commitHash)) {
+				commits.add(Commit.readCommit(join(COMMIT_OBJECT_DIR, commitHash)));
+			}
+		}
+		commits.sort(Comparator.comparing(Commit::getDate).thenComparing(Commit::getHash));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(JOURNAL_SIGNATURE);
+			out.writeByte(JOURNAL_FORMAT_VERSION);
+			for (Commit commit : commits) {
+				out.write(record(commit));
+			}
+		} catch (IOException excp) {
+			throw error("Internal error encoding commit journal.");
+		}
+		writeContentsAtomically(COMMIT_JOURNAL_FILE, bytes.toByteArray());
+	}
+
+	/** Prints the hash, date and message of the commits in the journal, in the order they were
+	 * created. Commits made before SINCE, in milliseconds since the epoch, are skipped, and at most
+	 * LIMIT commits are printed. */
+	public static void printLog(long since, long limit) {
+		if (!COMMIT_JOURNAL_FILE.isFile()) {
+			rebuild();
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(COMMIT_JOURNAL_FILE), BUFFER_SIZE))) {
+			if (in.readInt() != JOURNAL_SIGNATURE || in.readUnsignedByte() != JOURNAL_FORMAT_VERSION) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+
+			byte[] hash = new byte[HASH_SIZE];
+			long printed = 0;
+			while (printed < limit) {
+				in.readFully(hash);
+				long date = in.readLong();
+				int messageLength = in.readInt();
+				if (messageLength < 0 || messageLength > MAX_MESSAGE_LENGTH) {
+					break;
+				}
+				byte[] message = new byte[messageLength];
+				in.readFully(message);
+
+				if (date >= since) {
+					System.out.println(TRIPLE_EQUALS + "\ncommit " + toHexString(hash) + "\nDate: "
+							+ new Date(date) + "\n" + new String(message, StandardCharsets.UTF_8) + "\n");
+					printed += 1;
+				}
+			}
+		} catch (EOFException excp) {
+			// the end of the journal, or a record cut short by a command that was interrupted
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns the record of the given commit, its hash, date and message. */
+	private static byte[] record(Commit commit) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			byte[] message = commit.getMessage().getBytes(StandardCharsets.UTF_8);
+			out.write(fromHexString(commit.getHash()));
+			out.writeLong(commit.getDate().getTime());
+			out.writeInt(message.length);
+			out.write(message);
+		}
+		return bytes.toByteArray();
+	}
+}
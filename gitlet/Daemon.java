@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static gitlet.Utils.*;
+
+/**
+ * Serves Gitlet commands of the current repository over a loopback socket, so a command does not
+ * pay for starting a JVM and loading the repository from scratch. The daemon listens on a random
+ * port of the loopback address and writes the port, along with a random token that every request
+ * has to start with, to DAEMON_FILE. DaemonClient forwards the arguments of a command to it and
+ * streams back what the command prints.
+ *
+ * Commands are run one at a time. The INDEX file, the registries, the commit-graph, the packfiles
+ * and the ignore patterns stay loaded between commands, and each of them is forgotten as soon as
+ * the file it was read from has been changed by anything other than the daemon. The working
+ * directory is scanned again for every command. A command that fails forgets everything, as it
+ * may have left changes in memory that were never written.
+ *
+ * @author Vipul Sharma
+ */
+public class Daemon {
+	/** Number of random bytes in the token of a daemon. */
+	private static final int TOKEN_LENGTH = 16;
+
+	/** Most arguments a request may have. */
+	private static final int MAX_ARGUMENTS = 4096;
+
+	/** Milliseconds a client has to send its request once connected. */
+	private static final int REQUEST_TIMEOUT = 10_000;
+
+	/** Maps every file the loaded state is read from to the function that forgets that state. */
+	private static final Map<File, Runnable> WATCHED_FILES = new LinkedHashMap<>();
+
+	static {
+		WATCHED_FILES.put(INDEX_FILE, FileStager::reset);
+		WATCHED_FILES.put(TRACKING_FILE, FileRegistry::reset);
+		WATCHED_FILES.put(UNTRACKING_FILE, FileRegistry::reset);
+		WATCHED_FILES.put(COMMIT_GRAPH_FILE, CommitGraph::reset);
+		WATCHED_FILES.put(COMMIT_INDEX_FILE, CommitGraph::reset);
+		WATCHED_FILES.put(PACK_DIR, PackFile::reset);
+		WATCHED_FILES.put(join(CWD, IgnoreMatcher.IGNORE_FILE_NAME), IgnoreMatcher::reset);
+	}
+
+	/** Maps every watched file to its stat data as of the end of the last command. */
+	private final Map<File, Object> watchedStats = new HashMap<>();
+
+	/** The token every request has to start with. */
+	private final String token;
+
+	/** Whether a client asked the daemon to stop. */
+	private boolean stopped;
+
+	private Daemon(String token) {
+		this.token = token;
+	}
+
+	/** Serves commands until a client sends "daemon stop". Exits if another daemon is already
+	 * serving the repository. */
+	public static void serve() {
+		if (DaemonClient.isDaemonRunning()) {
+			exitWithError("A daemon is already running for this repository.", false);
+		}
+
+		byte[] tokenBytes = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(tokenBytes);
+		Daemon daemon = new Daemon(toHexString(tokenBytes));
+
+		try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			// the temporary file behind an atomic write is only readable by its owner
+			writeContentsAtomically(DAEMON_FILE, (serverSocket.getLocalPort() + " " + daemon.token)
+					.getBytes(StandardCharsets.UTF_8));
+			Runtime.getRuntime().addShutdownHook(new Thread(DAEMON_FILE::delete));
+			System.out.println("Gitlet daemon listening on port " + serverSocket.getLocalPort() + ".");
+
+			daemon.forgetAll();
+			while (!daemon.stopped) {
+				try (Socket socket = serverSocket.accept()) {
+					daemon.handle(socket);
+				} catch (IOException excp) {
+					// a client that went away only loses its own command
+				}
+			}
+		} catch (IOException excp) {
+			exitWithError("Unable to start the daemon - " + excp.getMessage(), false);
+		} finally {
+			DAEMON_FILE.delete();
+		}
+		System.out.println("Gitlet daemon stopped.");
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Reads a request from the given socket, runs its command and sends back what it prints. A
+	 * request is the token, the working directory of the client and the arguments of the command. */
+	private void handle(Socket socket) throws IOException {
+		socket.setSoTimeout(REQUEST_TIMEOUT);
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		byte[] requestToken = in.readUTF().getBytes(StandardCharsets.UTF_8);
+		if (!MessageDigest.isEqual(requestToken, token.getBytes(StandardCharsets.UTF_8))) {
+			return;
+		}
+		String clientDirectory = in.readUTF();
+		int argumentCount = in.readInt();
+		if (argumentCount < 0 || argumentCount > MAX_ARGUMENTS) {
+			return;
+		}
+		String[] args = new String[argumentCount];
+		for (int i = 0; i < argumentCount; i++) {
+			args[i] = in.readUTF();
+		}
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false,
+				StandardCharsets.UTF_8);
+		if (!new File(clientDirectory).getCanonicalFile().equals(CWD.getCanonicalFile())) {
+			out.println("The daemon serves " + CWD.getPath() + " only.");
+		} else if (args.length >= 1 && args[0].equals("daemon")) {
+			if (args.length == 2 && args[1].equals("stop")) {
+				stopped = true;
+				out.println("Stopping the daemon.");
+			} else {
+				out.println("A daemon is already running for this repository.");
+			}
+		} else {
+			runCommand(args, out);
+		}
+		out.flush();
+	}
+
+	/** Runs the command in ARGS with everything it prints going to OUT. */
+	private void runCommand(String[] args, PrintStream out) {
+		PrintStream originalOut = System.out;
+		PrintStream originalErr = System.err;
+		boolean succeeded = false;
+
+		// the lock is taken before the watched files are checked, so no other command can change
+		// them between the check and the end of this command
+		try (RepositoryLock lock = RepositoryLock.acquire(args)) {
+			forgetChangedState();
+			System.setOut(out);
+			System.setErr(out);
+			try {
+				Main.run(args);
+				succeeded = true;
+			} catch (CommandExit excp) {
+				// the error message has already been printed
+			} catch (RuntimeException excp) {
+				excp.printStackTrace(out);
+			} finally {
+				System.setOut(originalOut);
+				System.setErr(originalErr);
+			}
+
+			if (succeeded) {
+				recordWatchedStats();
+			} else {
+				forgetAll();
+			}
+		}
+	}
+
+	/** Forgets the loaded state read from every watched file that has changed since the last
+	 * command, and the snapshot of the working directory and the refs. */
+	private void forgetChangedState() {
+		for (var fileAndReset : WATCHED_FILES.entrySet()) {
+			if (!Objects.equals(watchedStats.get(fileAndReset.getKey()), statOf(fileAndReset.getKey()))) {
+				fileAndReset.getValue().run();
+			}
+		}
+		WorkingTree.reset();
+		RefStore.reset();
+	}
+
+	/** Forgets all the loaded state. */
+	private void forgetAll() {
+		for (Runnable reset : WATCHED_FILES.values()) {
+			reset.run();
+		}
+		WorkingTree.reset();
+		RefStore.reset();
+		recordWatchedStats();
+	}
+
+	/** Records the current stat data of every watched file. */
+	private void recordWatchedStats() {
+		for (File file : WATCHED_FILES.keySet()) {
+			watchedStats.put(file, statOf(file));
+		}
+	}
+
+	/** Returns the modification time, size and file key of the given file or directory, or null if
+	 * it does not exist. Files written atomically get a new file key every time. */
+	private static Object statOf(File file) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			return Arrays.asList(FileStat.toNanos(attributes.lastModifiedTime()), attributes.size(),
+					attributes.fileKey());
+		} catch (IOException excp) {
+			return null;
+		}
+	}
+}
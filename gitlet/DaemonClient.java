@@ -0,0 +1,88 @@
+package gitlet;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Thin client of the Gitlet daemon. Usage: java gitlet.DaemonClient ARGS, with the same ARGS as
+ * gitlet.Main. The arguments are forwarded to the daemon serving the repository in the current
+ * directory, and everything the command prints is streamed back. If no daemon is running, the
+ * command is run in this JVM instead.
+ *
+ * @author Vipul Sharma
+ */
+public class DaemonClient {
+
+    /** Forwards ARGS to the daemon, or runs them with gitlet.Main if there is no daemon. */
+    public static void main(String[] args) {
+        String[] daemon = findDaemon();
+        if (daemon == null || !forward(daemon, args)) {
+            Main.main(args);
+        }
+    }
+
+    /** Returns true if a daemon is serving the repository in the current directory. */
+    static boolean isDaemonRunning() {
+        String[] daemon = findDaemon();
+        if (daemon == null) {
+            return false;
+        }
+        try {
+            new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon[0])).close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the port and the token written by the daemon serving the repository in the current
+     *  directory, or null if there are none. The daemon may have been killed since. */
+    private static String[] findDaemon() {
+        File daemonFile = new File(new File(System.getProperty("user.dir"), ".gitlet"), "daemon");
+        try {
+            String[] portAndToken = new String(Files.readAllBytes(daemonFile.toPath()),
+                    StandardCharsets.UTF_8).trim().split(" ");
+            Integer.parseInt(portAndToken[0]);
+            return portAndToken.length == 2 ? portAndToken : null;
+        } catch (IOException | NumberFormatException excp) {
+            return null;
+        }
+    }
+
+    /** Sends ARGS to the daemon and copies its reply to standard output. Returns false if the
+     *  daemon could not be reached before anything was sent. */
+    private static boolean forward(String[] daemon, String[] args) {
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(daemon[0]));
+        } catch (IOException excp) {
+            // a stale daemon file left by a daemon that was killed
+            return false;
+        }
+
+        try (socket) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(daemon[1]);
+            out.writeUTF(System.getProperty("user.dir"));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            socket.shutdownOutput();
+
+            InputStream in = socket.getInputStream();
+            in.transferTo(System.out);
+            System.out.flush();
+        } catch (IOException excp) {
+            System.out.println("Lost the connection to the daemon - " + excp.getMessage());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents a set of file paths kept in a text file with one path per line, such as the files
+ * tracked in the current branch (TRACKING file) and the files staged for removal (UNTRACKING
+ * file). A registry is read once per command into a hash set, and changes are only written back,
+ * all at once and atomically, by saveAll at the end of the command. An empty registry has no
+ * file.
+ *
+ * @author Vipul Sharma
+ */
+public class FileRegistry {
+	/** The registry of the files tracked in the current branch, loaded lazily once per command. */
+	private static FileRegistry trackedFiles;
+
+	/** The registry of the files staged for removal, loaded lazily once per command. */
+	private static FileRegistry removedFiles;
+
+	/** The file the registry is kept in. */
+	private final File file;
+
+	/** The paths in the registry, in the order they were added. */
+	private final Set<String> paths;
+
+	/** Whether the paths have changed since the file was read. */
+	private boolean changed;
+
+	private FileRegistry(File file) {
+		this.file = file;
+		this.paths = readPaths(file);
+	}
+
+	/** Returns the registry of the files tracked in the current branch. */
+	public static synchronized FileRegistry tracked() {
+		if (trackedFiles == null) {
+			trackedFiles = new FileRegistry(TRACKING_FILE);
+		}
+		return trackedFiles;
+	}
+
+	/** Returns the registry of the files staged for removal. */
+	public static synchronized FileRegistry removed() {
+		if (removedFiles == null) {
+			removedFiles = new FileRegistry(UNTRACKING_FILE);
+		}
+		return removedFiles;
+	}
+
+	/** Forgets the loaded registries, so they are read again the next time they are needed. */
+	static synchronized void reset() {
+		trackedFiles = null;
+		removedFiles = null;
+	}
+
+	/** Writes every registry that has changed during this command. */
+	public static void saveAll() {
+		for (FileRegistry registry : new FileRegistry[] {trackedFiles, removedFiles}) {
+			if (registry != null && registry.changed) {
+				registry.writeTo(registry.file);
+				registry.changed = false;
+			}
+		}
+	}
+
+	/** Returns the paths in the given registry file, or an empty set if there is no such file. */
+	public static Set<String> readPaths(File file) {
+		Set<String> paths = new LinkedHashSet<>();
+		byte[] contents = Transaction.read(file);
+		if (contents != null) {
+			for (String path : new String(contents, StandardCharsets.UTF_8).split("\n")) {
+				if (!path.isEmpty()) {
+					paths.add(path);
+				}
+			}
+		}
+		return paths;
+	}
+
+	/** Returns true if the given path is in the registry. */
+	public boolean contains(String path) {
+		return paths.contains(path);
+	}
+
+	/** Adds the given path to the registry. */
+	public void add(String path) {
+		changed |= paths.add(path);
+	}
+
+	/** Removes the given path from the registry. */
+	public void remove(String path) {
+		changed |= paths.remove(path);
+	}
+
+	/** Replaces all the paths in the registry with the given ones. */
+	public void replaceWith(Collection<String> newPaths) {
+		paths.clear();
+		paths.addAll(newPaths);
+		changed = true;
+	}
+
+	/** Removes all the paths from the registry. */
+	public void clear() {
+		changed |= !paths.isEmpty();
+		paths.clear();
+	}
+
+	/** Returns true if the registry has no paths. */
+	public boolean isEmpty() {
+		return paths.isEmpty();
+	}
+
+	/** Returns the number of paths in the registry. */
+	public int size() {
+		return paths.size();
+	}
+
+	/** Returns the paths in the registry, in the order they were added. */
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(paths);
+	}
+
+	/** Writes the paths in the registry to the given file through the running transaction, or
+	 * deletes the file if the registry is empty. */
+	public void writeTo(File registryFile) {
+		if (paths.isEmpty()) {
+			Transaction.delete(registryFile);
+			return;
+		}
+		Transaction.write(registryFile, String.join("\n", paths).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -1,140 +1,186 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 
 import static gitlet.Utils.*;
 
 /**
- * Helper class that creates a map that maps file paths to their blobs.
+ * Helper class that creates a map that maps file paths to their blobs. The map is kept in the
+ * INDEX file along with the stat data of the tracked files, which lets status skip hashing files
+ * that have not changed since they were last hashed. The INDEX file is read once per command, and
+ * written once at the end of the command if anything in it has changed.
  *
  * @author Vipul Sharma
  */
 public class FileStager implements Serializable {
+	/** Keeps staging areas written by older versions of Gitlet readable. */
+	private static final long serialVersionUID = 5452085640302745074L;
+	
+	/** Magic bytes at the start of the INDEX file ("GIDX"). */
+	private static final int INDEX_SIGNATURE = 0x47494458;
+	
+	/** Version of the INDEX file layout written by this version of Gitlet. */
+	private static final int INDEX_FORMAT_VERSION = 1;
+	
+	/** First byte of an INDEX file written as a serialized Java object. */
+	private static final int SERIALIZED_INDEX_MAGIC = 0xac;
+	
+	/** The INDEX file, loaded lazily once per command. */
+	private static FileStager loadedIndex;
+	
 	private final Map<String, String> stageFileMap;
 	
-	public FileStager() {
-		this.stageFileMap = new HashMap<>();
-	}
+	/** Maps the paths of files that have been hashed to their stat data and hash. */
+	private transient Map<String, FileStat> fileStats;
 	
-	/** Clears the staging area. */
-	public static void clearStagingArea() {
-		Repository.deleteFileIfEmpty(INDEX_FILE, true);
+	/** Modification time of the INDEX file when it was read, in nanoseconds since the epoch. */
+	private transient long indexModifiedTime;
+	
+	/** Whether the staged files or fileStats have changed since the INDEX file was read. */
+	private transient boolean changed;
+	
+	private FileStager(Map<String, String> stageFileMap, Map<String, FileStat> fileStats) {
+		this.stageFileMap = stageFileMap;
+		this.fileStats = fileStats;
 	}
 	
-	/** Deletes the old blob file for the file at path provided. */
-	public static void deleteOldStagedFile(String fileRelativePath) {
+	/** Clears the staging area. The stat data of the files is kept. */
+	public static void clearStagingArea() {
 		FileStager fs = getAllStagedFiles();
-		
-		String blobName = fs.stageFileMap.remove(fileRelativePath);
-		writeObject(INDEX_FILE, fs);
-		
-		if (blobName != null) {
-			deleteBlobFile(blobName);
-		}
-		deleteIndexFileIfEmpty();
+		fs.stageFileMap.clear();
+		fs.changed = true;
 	}
 	
 	/** Returns number of staged files. */
 	public static int getNumberOfStagedFiles() {
-		if (INDEX_FILE.exists()) {
-			return Objects.requireNonNull(getStagedFiles()).size();
-		}
-		return 0;
+		return getAllStagedFiles().stageFileMap.size();
 	}
 	
 	/** Returns the map of staged files. */
 	public static Map<String, String> getStagedFiles() {
-		if (INDEX_FILE.exists()) {
-			FileStager fs = getAllStagedFiles();
-			return fs.stageFileMap;
-		}
-		return null;
+		return getAllStagedFiles().stageFileMap;
 	}
 	
 	/** Gets currently staged hash for the file specified by the path. */
 	public static String getStagedHash(String fileRelativePath) {
-		return Objects.requireNonNull(getStagedFiles()).get(fileRelativePath);
+		return getStagedFiles().get(fileRelativePath);
 	}
 	
 	/** Returns true if given file path is staged. */
 	public static boolean isFileStaged(String filePath) {
-		if (INDEX_FILE.exists()) {
-			for(var fileAndBlob: Objects.requireNonNull(getStagedFiles()).entrySet()) {
-				if (filePath.equals(fileAndBlob.getKey())) {
-					return true;
-				}
-			}
-		}
-		
-		return false;
+		return getStagedFiles().containsKey(filePath);
 	}
 	
 	/** Checks for and lists the staged files. */
 	public static void listStagedFiles() {
-		if (!INDEX_FILE.exists()) {
-			return;
-		}
-		
-		for(var fileAndBlob: Objects.requireNonNull(getStagedFiles()).entrySet()) {
+		for(var fileAndBlob: getStagedFiles().entrySet()) {
 			System.out.println(fileAndBlob.getKey());
 		}
 	}
 	
-	/** Removes a file from the staging area. This is done to stop tracking the file. */
+	/** Removes a file from the staging area. Its blob is left for gc, since another staged file or
+	 * a commit may have the same contents and so the same blob. */
 	public static void removeFileFromStagingArea(String fileRelativePath) {
 		FileStager fs = getAllStagedFiles();
-		Objects.requireNonNull(fs.stageFileMap).remove(fileRelativePath);
-		writeObject(INDEX_FILE, fs);
-		deleteIndexFileIfEmpty();
+		fs.stageFileMap.remove(fileRelativePath);
+		fs.changed = true;
 	}
 	
-	/** Creates a map object, that maps file to its blob name, also creates a blob object
-	 * for that file. */
-	public static void stageFile(String fileRelativePath, String blobName, File blobFile, File fileToAdd) {
-		FileStager fs;
-		if (!INDEX_FILE.exists()) {
-			fs = new FileStager();
-		} else {
-			fs = getAllStagedFiles();
-		}
+	/** Creates a map object, that maps file to its blob name. The blob itself has already been
+	 * stored while the file was hashed. */
+	public static void stageFile(String fileRelativePath, String blobName) {
+		FileStager fs = getAllStagedFiles();
 		
 		fs.stageFileMap.put(fileRelativePath, blobName);
-		writeObject(INDEX_FILE, fs);
+		fs.changed = true;
+	}
+	
+	/** Returns the hash of the contents of the file in the working directory at the given path.
+	 * The file is only hashed if its stat data has changed since it was last hashed. */
+	public static String hashWorkingFile(String fileRelativePath, File file) {
+		FileStat currentStat = FileStat.of(file);
+		String cachedHash = getCachedHash(fileRelativePath, currentStat);
+		if (cachedHash != null) {
+			return cachedHash;
+		}
 		
-		writeContents(blobFile, readContentsAsString(fileToAdd));
+		String blobName = BlobStore.hashFile(file);
+		if (currentStat != null) {
+			cacheFileStat(fileRelativePath, currentStat.withHash(blobName));
+		}
+		return blobName;
+	}
+	
+	/** Returns the hash recorded for the file at the given path if its current stat data is the
+	 * same as the recorded one, or null if the file has to be hashed. Safe to call from several
+	 * threads at once, as long as no stat data is being recorded. */
+	public static String getCachedHash(String fileRelativePath, FileStat currentStat) {
+		FileStager fs = getAllStagedFiles();
+		FileStat cachedStat = fs.fileStats.get(fileRelativePath);
+		
+		if (currentStat != null && currentStat.matches(cachedStat)
+				&& cachedStat.isModifiedBefore(fs.indexModifiedTime)) {
+			return cachedStat.getHash();
+		}
+		return null;
+	}
+	
+	/** Records the stat data of the file at the given path, along with its hash. */
+	public static void cacheFileStat(String fileRelativePath, FileStat fileStat) {
+		FileStager fs = getAllStagedFiles();
+		fs.fileStats.put(fileRelativePath, fileStat);
+		fs.changed = true;
+	}
+	
+	/** Writes the INDEX file if it has changed during this command. */
+	public static void saveIndex() {
+		if (loadedIndex != null && loadedIndex.changed) {
+			writeIndex(loadedIndex);
+		}
+	}
+	
+	/** Forgets the loaded INDEX file, so it is read again the next time it is needed. */
+	static synchronized void reset() {
+		loadedIndex = null;
 	}
 	
 	/** Stages accordingly if the file does not exist. */
 	public static void stageIfFileDoesNotExist(String fileRelativePath, String blobName,
-	                                           String fileName, File blobFile, File fileToAdd,
-	                                           boolean verbose) {
+	                                           String fileName, boolean verbose) {
 		// Check in files being tracked
-		if (!Repository.isFileNameInFile(TRACKING_FILE, fileRelativePath)) {
-			Repository.addFileNameToFile(TRACKING_FILE, fileRelativePath);
-		} else if (!isCurrentSameAsStaged(fileRelativePath, blobName) && INDEX_FILE.exists()) {
-			FileStager.deleteOldStagedFile(fileRelativePath);
+		if (!FileRegistry.tracked().contains(fileRelativePath)) {
+			FileRegistry.tracked().add(fileRelativePath);
+		} else if (!isCurrentSameAsStaged(fileRelativePath, blobName) && getNumberOfStagedFiles() >= 1) {
+			FileStager.removeFileFromStagingArea(fileRelativePath);
 		}
 		
-		updateStagedFileSha(fileRelativePath, blobName, fileName, blobFile, fileToAdd, verbose);
+		updateStagedFileSha(fileRelativePath, blobName, fileName, verbose);
 	}
 	
 	/** Stages accordingly if the file already exists. */
-	public static void stageIfFileExists(String fileRelativePath, String blobName,
-	                                     File blobFile, File fileToAdd, boolean verbose) {
-		if (isCurrentSameAsStaged(fileRelativePath, blobName) && verbose) {
+	public static void stageIfFileExists(String fileRelativePath, String blobName, boolean verbose) {
+		if (isCurrentSameAsStaged(fileRelativePath, blobName)) {
+			if (verbose) {
 				System.out.println("File is already added.");
+			}
 		} else if (Commit.isFileAlreadyCommitted(fileRelativePath)) {
-			stageIfFileIsCommitted(fileRelativePath, blobName, blobFile, fileToAdd, verbose);
+			stageIfFileIsCommitted(fileRelativePath, blobName, verbose);
 		} else {
 			// file was removed, now it's being added again.
-			FileStager.stageFile(fileRelativePath, blobName, blobFile, fileToAdd);
-			if (!Repository.isFileNameInFile(TRACKING_FILE, fileRelativePath)) {
-				Repository.addFileNameToFile(TRACKING_FILE, fileRelativePath);
-			}
+			FileStager.stageFile(fileRelativePath, blobName);
+			FileRegistry.tracked().add(fileRelativePath);
 			if (verbose) {
 				System.out.println("Added " + fileRelativePath + " as " +
 						truncateString(blobName, 7) + ".");
@@ -145,80 +191,142 @@ public class FileStager implements Serializable {
 	/** Unstages a file that is being tracked. */
 	public static void unstageTrackedFile(String fileRelativePath) {
 		File fileToBeUnstaged = new File(fileRelativePath);
-		byte[] contents = readContents(fileToBeUnstaged);
-		
-		String fileToBeUnstagedHash = sha1(contents);
+		String fileToBeUnstagedHash = hashWorkingFile(fileRelativePath, fileToBeUnstaged);
 		if (Commit.isFileInHeadCommit(fileRelativePath, fileToBeUnstagedHash)) {
-			Repository.addFileNameToFile(UNTRACKING_FILE, fileRelativePath);
+			FileRegistry.removed().add(fileRelativePath);
 		}
 		
 		File fileToBeRemoved = new File(fileRelativePath);
 		if (fileToBeRemoved.exists() && !fileToBeRemoved.delete()) {
 			exitWithError("Unable to delete the file - " + fileRelativePath, false);
 		}
+		
+		FileStager fs = getAllStagedFiles();
+		if (fs.fileStats.remove(fileRelativePath) != null) {
+			fs.changed = true;
+		}
 	}
 
 	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
-	/** Deletes the blob file with given name. */
-	private static void deleteBlobFile(String blobName) {
-		File blobFile = join(GITLET_DIR, blobName);
-		if (!blobFile.delete()) {
-			exitWithError("Could not update file's sha1 blob!", true);
+	/** Writes the INDEX file, or deletes it if it would be empty. */
+	private static void writeIndex(FileStager fs) {
+		fs.changed = false;
+		if (fs.stageFileMap.isEmpty() && fs.fileStats.isEmpty()) {
+			Transaction.delete(INDEX_FILE);
+			return;
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(INDEX_SIGNATURE);
+			out.writeByte(INDEX_FORMAT_VERSION);
+			out.writeInt(fs.stageFileMap.size());
+			for (var fileAndBlob : new TreeMap<>(fs.stageFileMap).entrySet()) {
+				writePath(out, fileAndBlob.getKey());
+				out.write(fromHexString(fileAndBlob.getValue()));
+			}
+			out.writeInt(fs.fileStats.size());
+			for (var fileAndStat : new TreeMap<>(fs.fileStats).entrySet()) {
+				writePath(out, fileAndStat.getKey());
+				fileAndStat.getValue().write(out);
+			}
+		} catch (IOException excp) {
+			throw error("Internal error encoding INDEX file.");
+		}
+		Transaction.write(INDEX_FILE, bytes.toByteArray());
+		// the stat data now has to be older than the new INDEX file, as if it had just been read. Until
+		// the transaction commits the old INDEX file stands in for it, which trusts less stat data
+		try {
+			fs.indexModifiedTime = FileStat.toNanos(Files.getLastModifiedTime(INDEX_FILE.toPath()));
+		} catch (IOException excp) {
+			fs.indexModifiedTime = 0;
+		}
+	}
+	
+	/** Returns an object of all the staged files, reading the INDEX file the first time. */
+	private static synchronized FileStager getAllStagedFiles() {
+		if (loadedIndex == null) {
+			loadedIndex = readIndex();
 		}
+		return loadedIndex;
 	}
 	
-	/** Deletes the index file if no file is staged. */
-	private static void deleteIndexFileIfEmpty() {
-		if (getNumberOfStagedFiles() == 0) {
-			if (!INDEX_FILE.delete()) {
-				System.out.println("Could not update INDEX file.");
+	/** Reads the INDEX file. INDEX files written as serialized objects by older versions of Gitlet
+	 * only hold the staged files. */
+	private static FileStager readIndex() {
+		if (!INDEX_FILE.exists()) {
+			return new FileStager(new HashMap<>(), new HashMap<>());
+		}
+		
+		byte[] contents = readContents(INDEX_FILE);
+		if (contents.length > 0 && (contents[0] & 0xff) == SERIALIZED_INDEX_MAGIC) {
+			FileStager legacyIndex = readObject(INDEX_FILE, FileStager.class);
+			return new FileStager(new HashMap<>(legacyIndex.stageFileMap), new HashMap<>());
+		}
+		
+		FileStager fs = new FileStager(new HashMap<>(), new HashMap<>());
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents))) {
+			if (in.readInt() != INDEX_SIGNATURE || in.readUnsignedByte() != INDEX_FORMAT_VERSION) {
+				exitWithError(CORRUPTED_REPO, false);
 			}
+			byte[] blobName = new byte[UID_LENGTH / 2];
+			for (int i = in.readInt(); i > 0; i--) {
+				String fileRelativePath = readPath(in);
+				in.readFully(blobName);
+				fs.stageFileMap.put(fileRelativePath, toHexString(blobName));
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				fs.fileStats.put(readPath(in), FileStat.read(in));
+			}
+			fs.indexModifiedTime = FileStat.toNanos(Files.getLastModifiedTime(INDEX_FILE.toPath()));
+		} catch (IOException excp) {
+			exitWithError(CORRUPTED_REPO, false);
 		}
+		return fs;
 	}
 	
-	/** Returns an object of all the staged files. */
-	private static FileStager getAllStagedFiles() {
-		return readObject(INDEX_FILE, FileStager.class);
+	/** Writes a path as its length followed by its UTF-8 bytes. */
+	private static void writePath(DataOutputStream out, String fileRelativePath) throws IOException {
+		byte[] path = fileRelativePath.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(path.length);
+		out.write(path);
+	}
+	
+	/** Reads a path written by writePath. */
+	private static String readPath(DataInputStream in) throws IOException {
+		byte[] path = new byte[in.readInt()];
+		in.readFully(path);
+		return new String(path, StandardCharsets.UTF_8);
 	}
 	
 	/** Returns true if current hash is same as the hash of the file currently staged. */
 	private static boolean isCurrentSameAsStaged(String fileRelativePath, String sha) {
-		if (INDEX_FILE.exists()) {
-			String stagedHash = FileStager.getStagedHash(fileRelativePath);
-			return Objects.equals(sha, stagedHash);
-		}
-		return false;
+		return Objects.equals(sha, getStagedHash(fileRelativePath));
 	}
 	
-	/** Remove the removed files from the staged files map. */
-	public static void modifyStagedFilesUsingRemovedFiles(Map<String, String> stagedFiles) {
-		String[] untrackedFiles = readContentsAsString(UNTRACKING_FILE).split("\n");
-		
-		for (String untrackedFile: untrackedFiles) {
-			stagedFiles.remove(untrackedFile);
+	/** Marks the removed files as removed, i.e. maps them to null, in the given map of changes. */
+	public static void modifyStagedFilesUsingRemovedFiles(Map<String, String> changes) {
+		for (String untrackedFile: FileRegistry.removed().getPaths()) {
+			changes.put(untrackedFile, null);
 		}
 	}
 	
 	/** Completes staging if file is already committed. */
 	private static void stageIfFileIsCommitted(String fileRelativePath, String blobName,
-	                                           File blobFile, File fileToAdd, boolean verbose) {
-		if (INDEX_FILE.exists()) {
-			FileStager.deleteOldStagedFile(fileRelativePath);
+	                                           boolean verbose) {
+		if (getNumberOfStagedFiles() >= 1) {
+			FileStager.removeFileFromStagingArea(fileRelativePath);
 		}
 		if (!Commit.isFileInHeadCommit(fileRelativePath, blobName)) {
 			// file was added, committed, removed and now is being added again.
-			FileStager.stageFile(fileRelativePath, blobName, blobFile, fileToAdd);
+			FileStager.stageFile(fileRelativePath, blobName);
 			if (verbose) {
 				System.out.println("Added " + fileRelativePath + " as " +
 						truncateString(blobName, 7) + ".");
 			}
 		} else {
-			if (Repository.isFileNameInFile(UNTRACKING_FILE, fileRelativePath)) {
-				Repository.removeFileNameFromFile(UNTRACKING_FILE, fileRelativePath);
-			}
-			if (!Repository.isFileNameInFile(TRACKING_FILE, fileRelativePath)) {
-				Repository.addFileNameToFile(TRACKING_FILE, fileRelativePath);
-			}
+			FileRegistry.removed().remove(fileRelativePath);
+			FileRegistry.tracked().add(fileRelativePath);
 			if (verbose) {
 				System.out.println("Current version of " + fileRelativePath + " already exists in " +
 						"the HEAD commit.");
@@ -228,10 +336,9 @@ public class FileStager implements Serializable {
 	
 	/** Updates sha of the staged file in INDEX file. */
 	private static void updateStagedFileSha(String fileRelativePath, String blobName,
-	                                        String fileName, File blobFile, File fileToAdd,
-	                                        boolean verbose) {
+	                                        String fileName, boolean verbose) {
 		/* File doesn't exist already and is being tracked, update its sha1 */
-		FileStager.stageFile(fileRelativePath, blobName, blobFile, fileToAdd);
+		FileStager.stageFile(fileRelativePath, blobName);
 		
 		if (verbose && Repository.isInGitletIgnore(fileRelativePath)) {
 			System.out.println("Overriding specified GITLET_IGNORE behavior...");
@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the stat data of a file in the working directory, its size, modification time and
+ * inode, along with the hash its contents had when the stat data was taken. As long as the stat
+ * data of a file does not change, neither have its contents, so the hash can be reused instead of
+ * reading the file again.
+ *
+ * @author Vipul Sharma
+ */
+public class FileStat {
+	/** Whether the file system exposes inodes, through the "unix" attribute view. */
+	private static final boolean HAS_INODES = FileSystems.getDefault().supportedFileAttributeViews()
+			.contains("unix");
+
+	/** Size of the file in bytes. */
+	private final long size;
+
+	/** Modification time of the file in nanoseconds since the epoch. */
+	private final long modifiedTime;
+
+	/** Inode of the file, 0 if the file system does not expose inodes. */
+	private final long inode;
+
+	/** Hash of the contents of the file, null if it has not been calculated. */
+	private final String hash;
+
+	private FileStat(long size, long modifiedTime, long inode, String hash) {
+		this.size = size;
+		this.modifiedTime = modifiedTime;
+		this.inode = inode;
+		this.hash = hash;
+	}
+
+	/** Returns the stat data of the given file, or null if it is not a regular file. The stat data
+	 * has to be taken before the file is hashed, so a change made while hashing is noticed later. */
+	public static FileStat of(File file) {
+		Path path = file.toPath();
+		try {
+			if (HAS_INODES) {
+				Map<String, Object> attributes = Files.readAttributes(path,
+						"unix:isRegularFile,size,lastModifiedTime,ino", LinkOption.NOFOLLOW_LINKS);
+				if (!(Boolean) attributes.get("isRegularFile")) {
+					return null;
+				}
+				return new FileStat((Long) attributes.get("size"),
+						toNanos((FileTime) attributes.get("lastModifiedTime")), (Long) attributes.get("ino"), null);
+			}
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			if (!attributes.isRegularFile()) {
+				return null;
+			}
+			return new FileStat(attributes.size(), toNanos(attributes.lastModifiedTime()), 0, null);
+		} catch (IOException excp) {
+			return null;
+		}
+	}
+
+	/** Returns this stat data along with the hash of the contents of the file. */
+	public FileStat withHash(String hash) {
+		return new FileStat(this.size, this.modifiedTime, this.inode, hash);
+	}
+
+	/** Returns the hash of the contents of the file. */
+	public String getHash() {
+		return this.hash;
+	}
+
+	/** Returns true if the given stat data is the same as this one. */
+	public boolean matches(FileStat other) {
+		return other != null && this.size == other.size && this.modifiedTime == other.modifiedTime
+				&& this.inode == other.inode;
+	}
+
+	/** Returns true if the file was modified before the given time, in nanoseconds since the
+	 * epoch. A file modified at the same time as the index was written may have been modified again
+	 * within the resolution of the clock after it was hashed, so its hash cannot be trusted. */
+	public boolean isModifiedBefore(long time) {
+		return this.modifiedTime < time;
+	}
+
+	/** Returns the given time in nanoseconds since the epoch. */
+	public static long toNanos(FileTime time) {
+		return time.to(TimeUnit.NANOSECONDS);
+	}
+
+	/** Writes this stat data and its hash. */
+	void write(DataOutputStream out) throws IOException {
+		out.writeLong(size);
+		out.writeLong(modifiedTime);
+		out.writeLong(inode);
+		out.write(fromHexString(hash));
+	}
+
+	/** Reads stat data written by write. */
+	static FileStat read(DataInputStream in) throws IOException {
+		long size = in.readLong();
+		long modifiedTime = in.readLong();
+		long inode = in.readLong();
+		byte[] hash = new byte[UID_LENGTH / 2];
+		in.readFully(hash);
+		return new FileStat(size, modifiedTime, inode, toHexString(hash));
+	}
+}
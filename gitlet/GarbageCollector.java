@@ -0,0 +1,238 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+import static gitlet.Utils.*;
+
+/**
+ * Removes the objects that neither a branch nor the staging area refers to, such as the commits
+ * left behind by reset and the blobs of files that were staged again before being committed. The
+ * mark phase walks the commit-graph from the head of every branch and marks each commit, its trees
+ * and its blobs in an ObjectIdSet, along with the staged blobs. The sweep phase then streams the
+ * object directories one entry at a time and removes every object that was not marked, and
+ * rewrites the packfiles that hold unmarked blobs.
+ *
+ * Unreachable objects modified within the grace period are kept, together with everything they
+ * refer to, since a command running at the same time may be about to refer to them. Removing
+ * commits rebuilds the commit-graph, the commit index, the message index and the commit journal,
+ * which would otherwise still list them, and the transaction journal is emptied, since replaying
+ * it would write back the objects it holds.
+ *
+ * @author Vipul Sharma
+ */
+public class GarbageCollector {
+	/** Grace period used unless another one is given, in days. */
+	public static final long DEFAULT_GRACE_DAYS = 14;
+
+	/** The commits, trees and blobs found reachable by the mark phase. */
+	private final ObjectIdSet reachable = new ObjectIdSet();
+
+	/** Objects modified at or after this time, in milliseconds since the epoch, are kept. */
+	private final long expiry;
+
+	/** If true, the objects that would be removed are listed instead. */
+	private final boolean dryRun;
+
+	/** Number of commits, trees and blobs removed. */
+	private int removedCommits;
+	private int removedTrees;
+	private int removedBlobs;
+
+	/** Number of unreachable objects kept for being younger than the grace period. */
+	private int keptObjects;
+
+	/** Number of bytes freed on disk. */
+	private long freedBytes;
+
+	private GarbageCollector(long graceMillis, boolean dryRun) {
+		this.expiry = System.currentTimeMillis() - graceMillis;
+		this.dryRun = dryRun;
+	}
+
+	/** Removes the unreachable objects modified more than GRACEMILLIS ago, or only lists them if
+	 * DRYRUN is true. */
+	public static void collect(long graceMillis, boolean dryRun) {
+		GarbageCollector collector = new GarbageCollector(graceMillis, dryRun);
+		collector.mark();
+		collector.sweep();
+		collector.printSummary();
+	}
+
+	/** Returns true if the object with the given hash was found reachable. */
+	boolean isReachable(String hash) {
+		return reachable.contains(hash);
+	}
+
+	/** Returns true if the given file was modified within the grace period. */
+	boolean isRecent(File file) {
+		return file.lastModified() >= expiry;
+	}
+
+	/** Returns true if objects are only listed, not removed. */
+	boolean isDryRun() {
+		return this.dryRun;
+	}
+
+	/** Records an unreachable blob of a packfile, listing it on a dry run. */
+	void recordPackedBlob(String blobName) {
+		removedBlobs += 1;
+		if (dryRun) {
+			System.out.println("blob " + blobName + " (packed)");
+		}
+	}
+
+	/** Records that the given number of unreachable objects were kept for being recent. */
+	void recordKept(int count) {
+		keptObjects += count;
+	}
+
+	/** Records that the given number of bytes were freed on disk. */
+	void recordFreed(long bytes) {
+		freedBytes += bytes;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Marks everything reachable from the branch heads, the staging area and the unreachable
+	 * commits and trees that are kept for being recent. */
+	private void mark() {
+		for (String branch : Branch.getAllBranchesDetails()) {
+			markHistory(branch.split(" ")[1]);
+		}
+		for (String blobName : FileStager.getStagedFiles().values()) {
+			reachable.add(blobName);
+		}
+
+		forEachObject(COMMIT_OBJECT_DIR, commitFile -> {
+			if (!isReachable(commitFile.getName()) && isRecent(commitFile)) {
+				keptObjects += 1;
+				markHistory(commitFile.getName());
+			}
+		});
+		forEachObject(TREE_DIR, treeFile -> {
+			if (!isReachable(treeFile.getName()) && isRecent(treeFile)) {
+				keptObjects += 1;
+				Tree.markReachable(treeFile.getName(), reachable);
+			}
+		});
+	}
+
+	/** Marks the commit with the given hash, its ancestors and their trees and blobs. The
+	 * commit-graph is walked instead of the commit objects, and a commit that is already marked is
+	 * not walked past, so shared history is only visited once. */
+	private void markHistory(String commitHash) {
+		CommitGraph graph = CommitGraph.load();
+		Deque<Integer> pendingPositions = new ArrayDeque<>();
+		pendingPositions.push(graph.positionOf(commitHash));
+
+		while (!pendingPositions.isEmpty()) {
+			int position = pendingPositions.pop();
+			if (!reachable.add(graph.hashAt(position))) {
+				continue;
+			}
+			Tree.markReachable(graph.treeAt(position), reachable);
+			for (int parent : new int[] {graph.parentOne(position), graph.parentTwo(position)}) {
+				if (parent != CommitGraph.NO_PARENT) {
+					pendingPositions.push(parent);
+				}
+			}
+		}
+	}
+
+	/** Removes every object that was not marked, then rebuilds the indexes of commits if any
+	 * commit was removed. The transaction journal is emptied first, so replaying it never brings
+	 * back a removed object. */
+	private void sweep() {
+		if (!dryRun) {
+			Transaction.checkpoint();
+		}
+		forEachObject(COMMIT_OBJECT_DIR, commitFile -> sweepObject(commitFile, "commit"));
+		forEachObject(TREE_DIR, treeFile -> sweepObject(treeFile, "tree"));
+		forEachObject(GITLET_DIR, blobFile -> sweepObject(blobFile, "blob"));
+		PackFile.prune(this);
+
+		if (!dryRun) {
+			ObjectCache.clearAll();
+		}
+		if (!dryRun && removedCommits > 0) {
+			rebuildCommitIndexes();
+		}
+	}
+
+	/** Removes the given object file unless it was marked or is recent. */
+	private void sweepObject(File objectFile, String kind) {
+		if (isReachable(objectFile.getName())) {
+			return;
+		}
+		if (isRecent(objectFile)) {
+			keptObjects += 1;
+			return;
+		}
+
+		switch (kind) {
+			case "commit" -> removedCommits += 1;
+			case "tree" -> removedTrees += 1;
+			default -> removedBlobs += 1;
+		}
+		if (dryRun) {
+			System.out.println(kind + " " + objectFile.getName() + " (" + objectFile.length() + " bytes)");
+			return;
+		}
+		long length = objectFile.length();
+		if (!objectFile.delete()) {
+			exitWithError("Could not delete file - " + objectFile.getName(), false);
+		}
+		freedBytes += length;
+	}
+
+	/** Runs ACTION on every file of the given directory that is named like an object. The
+	 * directory is streamed, so it is never listed whole. */
+	static void forEachObject(File directory, Consumer<File> action) {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.toPath())) {
+			for (Path entry : entries) {
+				if (BlobStore.isBlobName(entry.getFileName().toString()) && Files.isRegularFile(entry)) {
+					action.accept(entry.toFile());
+				}
+			}
+		} catch (NoSuchFileException excp) {
+			// a directory that was never created holds no objects
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Rebuilds the commit-graph and the commit index, the message index and the commit journal
+	 * from the commit objects that are left. */
+	static void rebuildCommitIndexes() {
+		for (File indexFile : new File[] {COMMIT_GRAPH_FILE, COMMIT_INDEX_FILE}) {
+			if (indexFile.exists() && !indexFile.delete()) {
+				exitWithError("Could not delete file - " + indexFile.getName(), false);
+			}
+		}
+		CommitGraph.reset();
+		CommitGraph.load();
+		MessageIndex.rebuild();
+		CommitJournal.rebuild();
+	}
+
+	/** Prints how many objects were, or would be, removed and kept. */
+	private void printSummary() {
+		String objects = removedCommits + " commit(s), " + removedTrees + " tree(s) and " + removedBlobs
+				+ " blob(s)";
+		if (dryRun) {
+			System.out.println("Would remove " + objects + ".");
+		} else {
+			System.out.println("Removed " + objects + ", freeing " + freedBytes + " bytes.");
+		}
+		if (keptObjects > 0) {
+			System.out.println("Kept " + keptObjects + " unreachable object(s) younger than the grace period.");
+		}
+	}
+}
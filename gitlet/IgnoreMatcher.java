@@ -0,0 +1,114 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static gitlet.Utils.*;
+
+/**
+ * Decides which paths Gitlet ignores, from the patterns in GITLET_IGNORE and in the .gitletignore
+ * file of the working directory (one pattern per line, lines starting with # are comments). A
+ * pattern is matched against the whole relative path of a file or directory. Patterns without
+ * regex metacharacters are plain paths, and are kept in a trie of path segments, so a path is
+ * looked up one segment at a time and everything under an ignored directory is ignored too. All
+ * the other patterns are compiled once into a single regex.
+ *
+ * @author Vipul Sharma
+ */
+public class IgnoreMatcher {
+	/** Name of the file in the working directory that holds the user's own patterns. */
+	public static final String IGNORE_FILE_NAME = ".gitletignore";
+
+	/** Characters that make a pattern a regex instead of a plain path. */
+	private static final String REGEX_METACHARACTERS = "\\[](){}*+?^$|";
+
+	/** Splits plain paths into segments, on both kinds of separators. */
+	private static final Pattern SEGMENT_SEPARATOR = Pattern.compile("[/\\\\]+");
+
+	/** The ignore matcher of the working directory, compiled lazily once per command. */
+	private static IgnoreMatcher loadedMatcher;
+
+	/** Root of the trie of the plain path patterns. */
+	private final Node root = new Node();
+
+	/** All the regex patterns combined, or null if there are none. */
+	private final Pattern combinedRegex;
+
+	private IgnoreMatcher(List<String> patterns) {
+		List<String> regexPatterns = new ArrayList<>();
+
+		for (String pattern : patterns) {
+			if (pattern.chars().anyMatch(c -> REGEX_METACHARACTERS.indexOf(c) >= 0)) {
+				regexPatterns.add(pattern);
+				continue;
+			}
+			Node node = root;
+			for (String segment : SEGMENT_SEPARATOR.split(pattern)) {
+				node = node.children.computeIfAbsent(segment, name -> new Node());
+			}
+			node.ignored = true;
+		}
+
+		combinedRegex = regexPatterns.isEmpty() ? null : Pattern.compile(regexPatterns.stream()
+				.map(pattern -> "(?:" + pattern + ")").collect(Collectors.joining("|")));
+	}
+
+	/** Returns the ignore matcher of the working directory. */
+	public static synchronized IgnoreMatcher load() {
+		if (loadedMatcher == null) {
+			List<String> patterns = new ArrayList<>(GITLET_IGNORE);
+			File ignoreFile = join(CWD, IGNORE_FILE_NAME);
+
+			if (ignoreFile.isFile()) {
+				for (String line : readContentsAsString(ignoreFile).split("\\r?\\n")) {
+					String pattern = line.trim();
+					if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+						patterns.add(pattern);
+					}
+				}
+			}
+			loadedMatcher = new IgnoreMatcher(patterns);
+		}
+		return loadedMatcher;
+	}
+
+	/** Forgets the loaded ignore matcher, so the patterns are read again the next time they are
+	 * needed. */
+	static synchronized void reset() {
+		loadedMatcher = null;
+	}
+
+	/** Returns true if the file or directory at the given relative path is ignored, either by a
+	 * pattern of its own or because a directory it is in is ignored. */
+	public boolean isIgnored(String fileRelativePath) {
+		Node node = root;
+		int segmentStart = 0;
+
+		while (node != null && segmentStart <= fileRelativePath.length()) {
+			int segmentEnd = fileRelativePath.indexOf(FILE_SEPARATOR, segmentStart);
+			if (segmentEnd < 0) {
+				segmentEnd = fileRelativePath.length();
+			}
+			node = node.children.get(fileRelativePath.substring(segmentStart, segmentEnd));
+			if (node != null && node.ignored) {
+				return true;
+			}
+			segmentStart = segmentEnd + FILE_SEPARATOR.length();
+		}
+		return combinedRegex != null && combinedRegex.matcher(fileRelativePath).matches();
+	}
+
+	/** A path segment of the plain path patterns. */
+	private static class Node {
+		/** Maps the names of the next segments to their nodes. */
+		private final Map<String, Node> children = new HashMap<>();
+
+		/** Whether a pattern ends at this segment. */
+		private boolean ignored;
+	}
+}
@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static gitlet.Utils.*;
+
+/**
+ * Checks the integrity of the repository, for the fsck command. Every commit, tree and blob, loose
+ * or packed, is read back and rehashed against its name, in parallel across the cores. Then every
+ * commit is checked to have its parents and its trees, every file of its manifest to have its blob,
+ * every staged file to have its blob, and every ref to be a valid branch pointing to a commit.
+ *
+ * Commits serialized as Java objects, written by the first versions of Gitlet, are not named by
+ * the hash of their contents, so only what they refer to is checked.
+ *
+ * @author Vipul Sharma
+ */
+public class IntegrityChecker {
+	/** The commits, trees and blobs whose contents match their names. */
+	private final ObjectIdSet validCommits = new ObjectIdSet();
+	private final ObjectIdSet validTrees = new ObjectIdSet();
+	private final ObjectIdSet validBlobs = new ObjectIdSet();
+
+	/** The problems found, in no particular order while objects are rehashed. */
+	private final ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<>();
+
+	/** Number of bytes rehashed. */
+	private final LongAdder rehashedBytes = new LongAdder();
+
+	/** Checks the repository and prints every problem found, followed by how much was rehashed. */
+	public static void check() {
+		IntegrityChecker checker = new IntegrityChecker();
+		List<StoredObject> objects = listObjects();
+
+		long start = System.nanoTime();
+		objects.parallelStream().forEach(checker::rehash);
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		List<String> hashProblems = new ArrayList<>(checker.problems);
+		hashProblems.sort(null);
+		hashProblems.forEach(System.out::println);
+		checker.problems.clear();
+
+		checker.checkCommits();
+		checker.checkStagedFiles();
+		checker.checkRefs();
+		checker.problems.forEach(System.out::println);
+
+		double megabytes = checker.rehashedBytes.sum() / 1e6;
+		System.out.printf("Checked %d commit(s), %d tree(s) and %d blob(s): %.1f MB in %.2f s (%.1f MB/s).%n",
+				count(objects, "commit"), count(objects, "tree"), count(objects, "blob"), megabytes, seconds,
+				megabytes / seconds);
+		int problemCount = hashProblems.size() + checker.problems.size();
+		System.out.println(problemCount == 0 ? "No problems found." : "Found " + problemCount + " problem(s).");
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** An object to rehash: its kind, its name and its file, which is null for a packed blob. */
+	private static class StoredObject {
+		private final String kind;
+		private final String name;
+		private final File file;
+
+		StoredObject(String kind, String name, File file) {
+			this.kind = kind;
+			this.name = name;
+			this.file = file;
+		}
+	}
+
+	/** Returns every commit, tree and blob of the repository. */
+	private static List<StoredObject> listObjects() {
+		List<StoredObject> objects = new ArrayList<>();
+		GarbageCollector.forEachObject(COMMIT_OBJECT_DIR,
+				commitFile -> objects.add(new StoredObject("commit", commitFile.getName(), commitFile)));
+		GarbageCollector.forEachObject(TREE_DIR,
+				treeFile -> objects.add(new StoredObject("tree", treeFile.getName(), treeFile)));
+		GarbageCollector.forEachObject(GITLET_DIR,
+				blobFile -> objects.add(new StoredObject("blob", blobFile.getName(), blobFile)));
+		for (String blobName : PackFile.packedBlobNames()) {
+			objects.add(new StoredObject("blob", blobName, null));
+		}
+		return objects;
+	}
+
+	/** Returns the number of objects of the given kind. */
+	private static long count(List<StoredObject> objects, String kind) {
+		return objects.stream().filter(object -> object.kind.equals(kind)).count();
+	}
+
+	/** Rehashes the given object and records it as valid if the hash matches its name. */
+	private void rehash(StoredObject object) {
+		String hash;
+		try {
+			if (object.file == null) {
+				byte[] contents = PackFile.read(object.name);
+				rehashedBytes.add(contents.length);
+				hash = sha1(contents);
+			} else if (object.kind.equals("blob")) {
+				rehashedBytes.add(object.file.length());
+				hash = BlobStore.hashFile(object.file);
+			} else {
+				byte[] contents = readContents(object.file);
+				rehashedBytes.add(contents.length);
+				hash = object.kind.equals("commit") && Commit.isSerializedCommit(contents) ? object.name
+						: sha1(contents);
+			}
+		} catch (IllegalArgumentException excp) {
+			problems.add(capitalize(object.kind) + " " + object.name + " cannot be read.");
+			return;
+		}
+
+		if (!hash.equals(object.name)) {
+			problems.add(capitalize(object.kind) + " " + object.name + (object.file == null ? " (packed)" : "")
+					+ " does not match its contents.");
+			return;
+		}
+		ObjectIdSet validObjects = switch (object.kind) {
+			case "commit" -> validCommits;
+			case "tree" -> validTrees;
+			default -> validBlobs;
+		};
+		synchronized (validObjects) {
+			validObjects.add(object.name);
+		}
+	}
+
+	/** Checks that every valid commit has its parents, its trees and the blobs of its manifest.
+	 * Trees shared by several commits are only checked once. */
+	private void checkCommits() {
+		ObjectIdSet checkedTrees = new ObjectIdSet();
+		ObjectIdSet checkedManifests = new ObjectIdSet();
+
+		GarbageCollector.forEachObject(COMMIT_OBJECT_DIR, commitFile -> {
+			String commitHash = commitFile.getName();
+			if (!validCommits.contains(commitHash)) {
+				return;
+			}
+			Commit commit = Commit.readCommitOrNull(commitFile);
+			if (commit == null) {
+				problems.add("Commit " + commitHash + " cannot be decoded.");
+				return;
+			}
+			for (String parent : new String[] {commit.getParent(), commit.getParentTwo()}) {
+				if (parent != null && (!BlobStore.isBlobName(parent) || !validCommits.contains(parent))) {
+					problems.add("Commit " + commitHash + " has a missing or broken parent " + parent + ".");
+				}
+			}
+
+			String treeHash = commit.getStoredTreeHash();
+			if (treeHash != null) {
+				String missingTree = Tree.findMissingTree(treeHash, validTrees, checkedTrees);
+				if (missingTree != null) {
+					problems.add("Commit " + commitHash + " has a missing or broken tree " + missingTree + ".");
+					return;
+				}
+				if (!checkedManifests.add(treeHash)) {
+					return;
+				}
+			}
+			for (Map.Entry<String, String> fileAndBlob : commit.getStagedFilesCommit().entrySet()) {
+				if (!validBlobs.contains(fileAndBlob.getValue())) {
+					problems.add("Commit " + commitHash + " tracks " + fileAndBlob.getKey()
+							+ " as a missing or broken blob " + fileAndBlob.getValue() + ".");
+				}
+			}
+		});
+	}
+
+	/** Checks that every staged file has its blob. */
+	private void checkStagedFiles() {
+		for (Map.Entry<String, String> fileAndBlob : FileStager.getStagedFiles().entrySet()) {
+			if (!validBlobs.contains(fileAndBlob.getValue())) {
+				problems.add("Staged file " + fileAndBlob.getKey() + " has a missing or broken blob "
+						+ fileAndBlob.getValue() + ".");
+			}
+		}
+	}
+
+	/** Checks that every ref is a valid branch name holding a valid commit, and that HEAD names an
+	 * existing branch. */
+	private void checkRefs() {
+		for (String branchName : RefStore.branchNames()) {
+			String commitHash = RefStore.read(branchName);
+			if (!RefStore.isValidBranchName(branchName)) {
+				problems.add("Ref " + branchName + " is not a valid branch name.");
+			} else if (!BlobStore.isBlobName(commitHash) || !validCommits.contains(commitHash)) {
+				problems.add("Branch " + branchName + " points to a missing or broken commit " + commitHash + ".");
+			}
+		}
+		if (!RefStore.exists(RefStore.currentBranch())) {
+			problems.add("HEAD names the branch " + RefStore.currentBranch() + ", which does not exist.");
+		}
+	}
+
+	/** Returns the given word with its first letter in upper case. */
+	private static String capitalize(String word) {
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+}
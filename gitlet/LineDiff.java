@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the longest common subsequence of the lines of two files with Myers' diff algorithm, in
+ * its linear space variant: the middle snake of the shortest edit script is found by searching
+ * from both ends at once, and the two halves on either side of it are solved the same way. Lines
+ * are numbered first so they are compared as ints, and the common prefix and suffix of every
+ * range are matched before it is searched. Time is O((N + M) D) for D differing lines, memory is
+ * O(N + M).
+ *
+ * Contents are decoded as ISO-8859-1, which maps every byte to one char, so lines can be written
+ * back byte for byte whatever their encoding.
+ *
+ * @author Vipul Sharma
+ */
+public class LineDiff {
+	/** Numbers of the lines of the first file. */
+	private final int[] a;
+
+	/** Numbers of the lines of the second file. */
+	private final int[] b;
+
+	/** For every line of the first file, the line of the second file it is matched with, or -1. */
+	private final int[] matches;
+
+	/** Furthest reaching x of the forward paths, by diagonal. */
+	private final int[] forward;
+
+	/** Furthest reaching x of the reverse paths, by diagonal. */
+	private final int[] reverse;
+
+	/** Offset of diagonal 0 in forward and reverse. */
+	private final int offset;
+
+	private LineDiff(int[] a, int[] b) {
+		this.a = a;
+		this.b = b;
+		this.matches = new int[a.length];
+		Arrays.fill(this.matches, -1);
+		this.offset = a.length + b.length + 1;
+		this.forward = new int[2 * offset + 1];
+		this.reverse = new int[2 * offset + 1];
+	}
+
+	/** Returns, for every line of the first list, the index of the line of the second list it is
+	 * matched with in a longest common subsequence of both lists, or -1 if it is not matched. */
+	public static int[] match(List<String> first, List<String> second) {
+		Map<String, Integer> lineNumbers = new HashMap<>();
+		LineDiff diff = new LineDiff(numberLines(first, lineNumbers), numberLines(second, lineNumbers));
+		diff.compare(0, diff.a.length, 0, diff.b.length);
+		return diff.matches;
+	}
+
+	/** Returns the lines of the given contents, each with its line terminator. The last line has
+	 * none if the contents do not end with one. */
+	public static List<String> splitLines(byte[] contents) {
+		String text = new String(contents, StandardCharsets.ISO_8859_1);
+		List<String> lines = new ArrayList<>();
+		int lineStart = 0;
+		while (lineStart < text.length()) {
+			int lineEnd = text.indexOf('\n', lineStart);
+			lineEnd = lineEnd < 0 ? text.length() : lineEnd + 1;
+			lines.add(text.substring(lineStart, lineEnd));
+			lineStart = lineEnd;
+		}
+		return lines;
+	}
+
+	/** Returns the bytes of the given lines, the reverse of splitLines. */
+	public static byte[] joinLines(List<String> lines) {
+		return String.join("", lines).getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	/** Returns true if the given contents look binary, i.e. have a NUL byte. */
+	public static boolean isBinary(byte[] contents) {
+		for (byte c : contents) {
+			if (c == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns the numbers of the given lines, equal lines getting equal numbers. */
+	private static int[] numberLines(List<String> lines, Map<String, Integer> lineNumbers) {
+		int[] numbers = new int[lines.size()];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = lineNumbers.computeIfAbsent(lines.get(i), line -> lineNumbers.size());
+		}
+		return numbers;
+	}
+
+	/** Matches the lines of a[aStart, aEnd) with those of b[bStart, bEnd). */
+	private void compare(int aStart, int aEnd, int bStart, int bEnd) {
+		while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+			matches[aStart++] = bStart++;
+		}
+		while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+			matches[--aEnd] = --bEnd;
+		}
+		if (aStart == aEnd || bStart == bEnd) {
+			return;
+		}
+
+		int[] snake = middleSnake(aStart, aEnd, bStart, bEnd);
+		for (int x = snake[0], y = snake[1]; x < snake[2]; x++, y++) {
+			matches[x] = y;
+		}
+		compare(aStart, snake[0], bStart, snake[1]);
+		compare(snake[2], aEnd, snake[3], bEnd);
+	}
+
+	/** Returns the start and end {x, y, u, v} of the middle snake of the shortest edit script from
+	 * a[aStart, aEnd) to b[bStart, bEnd), whose first and last lines differ. */
+	private int[] middleSnake(int aStart, int aEnd, int bStart, int bEnd) {
+		int n = aEnd - aStart;
+		int m = bEnd - bStart;
+		int delta = n - m;
+		boolean odd = (delta & 1) != 0;
+		forward[offset + 1] = 0;
+		reverse[offset + 1] = 0;
+
+		for (int d = 0; d <= (n + m + 1) / 2; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x = (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]))
+						? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+				int y = x - k;
+				int startX = x;
+				int startY = y;
+				while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+					x++;
+					y++;
+				}
+				forward[offset + k] = x;
+
+				int reverseK = delta - k;
+				if (odd && reverseK >= -(d - 1) && reverseK <= d - 1 && x + reverse[offset + reverseK] >= n) {
+					return new int[] {aStart + startX, bStart + startY, aStart + x, bStart + y};
+				}
+			}
+
+			for (int k = -d; k <= d; k += 2) {
+				int x = (k == -d || (k != d && reverse[offset + k - 1] < reverse[offset + k + 1]))
+						? reverse[offset + k + 1] : reverse[offset + k - 1] + 1;
+				int y = x - k;
+				int startX = x;
+				int startY = y;
+				while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+					x++;
+					y++;
+				}
+				reverse[offset + k] = x;
+
+				int forwardK = delta - k;
+				if (!odd && forwardK >= -d && forwardK <= d && x + forward[offset + forwardK] >= n) {
+					return new int[] {aEnd - x, bEnd - y, aEnd - startX, bEnd - startY};
+				}
+			}
+		}
+		throw new IllegalStateException("No middle snake between the lines.");
+	}
+}
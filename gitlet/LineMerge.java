@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges two versions of a file line by line against the version they both started from, the way
+ * diff3 does. Both versions are matched with the base version by LineDiff, and the base lines
+ * matched in both of them split the three files into stable chunks, which are the same everywhere,
+ * and unstable chunks in between. An unstable chunk changed on one side only takes that side, a
+ * chunk changed the same way on both sides takes either, and only a chunk changed differently on
+ * both sides is a conflict, written between conflict markers along with its base lines.
+ *
+ * @author Vipul Sharma
+ */
+public class LineMerge {
+	/** The merged lines. */
+	private final List<String> mergedLines = new ArrayList<>();
+
+	/** Number of conflicts in the merged lines. */
+	private int conflicts;
+
+	private LineMerge() {
+	}
+
+	/** Merges OURS and THEIRS, both changed from BASE. The sides of a conflict are labelled with
+	 * the given names. */
+	public static LineMerge merge(List<String> base, List<String> ours, List<String> theirs,
+	                              String oursName, String baseName, String theirsName) {
+		int[] oursMatches = LineDiff.match(base, ours);
+		int[] theirsMatches = LineDiff.match(base, theirs);
+		LineMerge merge = new LineMerge();
+
+		int baseLine = 0;
+		int oursLine = 0;
+		int theirsLine = 0;
+		while (baseLine < base.size() || oursLine < ours.size() || theirsLine < theirs.size()) {
+			if (baseLine < base.size() && oursMatches[baseLine] == oursLine
+					&& theirsMatches[baseLine] == theirsLine) {
+				merge.mergedLines.add(base.get(baseLine));
+				baseLine++;
+				oursLine++;
+				theirsLine++;
+				continue;
+			}
+
+			// the unstable chunk ends at the next base line matched on both sides
+			int nextBaseLine = baseLine;
+			while (nextBaseLine < base.size()
+					&& (oursMatches[nextBaseLine] < 0 || theirsMatches[nextBaseLine] < 0)) {
+				nextBaseLine++;
+			}
+			int nextOursLine = nextBaseLine < base.size() ? oursMatches[nextBaseLine] : ours.size();
+			int nextTheirsLine = nextBaseLine < base.size() ? theirsMatches[nextBaseLine] : theirs.size();
+
+			merge.mergeChunk(base.subList(baseLine, nextBaseLine), ours.subList(oursLine, nextOursLine),
+					theirs.subList(theirsLine, nextTheirsLine), oursName, baseName, theirsName);
+			baseLine = nextBaseLine;
+			oursLine = nextOursLine;
+			theirsLine = nextTheirsLine;
+		}
+		return merge;
+	}
+
+	/** Returns the merged lines. */
+	public List<String> getMergedLines() {
+		return this.mergedLines;
+	}
+
+	/** Returns the number of conflicts in the merged lines. */
+	public int getConflicts() {
+		return this.conflicts;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Adds the merge of an unstable chunk to the merged lines. */
+	private void mergeChunk(List<String> base, List<String> ours, List<String> theirs,
+	                        String oursName, String baseName, String theirsName) {
+		if (ours.equals(base) || ours.equals(theirs)) {
+			mergedLines.addAll(theirs);
+		} else if (theirs.equals(base)) {
+			mergedLines.addAll(ours);
+		} else {
+			conflicts += 1;
+			addMarker("<<<<<<< " + oursName);
+			addLines(ours);
+			addMarker("||||||| " + baseName);
+			addLines(base);
+			addMarker("=======");
+			addLines(theirs);
+			addMarker(">>>>>>> " + theirsName);
+		}
+	}
+
+	/** Adds the lines of one side of a conflict, ending the last one so the next marker is on a
+	 * line of its own. */
+	private void addLines(List<String> lines) {
+		mergedLines.addAll(lines);
+		if (!lines.isEmpty() && !lines.get(lines.size() - 1).endsWith("\n")) {
+			mergedLines.add("\n");
+		}
+	}
+
+	/** Adds a conflict marker line. */
+	private void addMarker(String marker) {
+		mergedLines.add(marker + "\n");
+	}
+}
@@ -1,5 +1,7 @@
 package gitlet;
 
+import java.util.Arrays;
+
 import static gitlet.Utils.*;
 
 /** Driver class for Gitlet, a subset of the Git version-control system.
@@ -11,6 +13,18 @@ public class Main {
      *  <COMMAND> <OPERAND1> <OPERAND2> ... 
      */
     public static void main(String[] args) {
+        try (RepositoryLock lock = RepositoryLock.acquire(args)) {
+            run(args);
+        } catch (CommandExit excp) {
+            System.exit(0);
+        }
+    }
+
+    /** Runs the command in ARGS, then writes back the INDEX file and the registries and commits
+     *  the transaction of the command. Ends with a CommandExit if the command fails, in which case
+     *  they are not written back and the transaction is aborted when the lock is released. The
+     *  caller holds the lock of the repository the command needs. */
+    static void run(String[] args) {
         if (args.length == 0) {
             System.out.println("Please enter a command.\n" + VALID_COMMANDS);
             return;
@@ -24,8 +38,8 @@ public class Main {
                 Repository.initRepo();
             }
             case "add" -> {
-                Repository.checkValidStructure(args, 2, 2);
-                Repository.add(args[1], true);
+                Repository.checkValidStructure(args, 2, Integer.MAX_VALUE);
+                Repository.add(Arrays.copyOfRange(args, 1, args.length));
             }
             case "commit" -> {
                 Repository.checkValidStructure(args, 2, 2);
@@ -40,12 +54,12 @@ public class Main {
                 Repository.logCommits();
             }
             case "global-log" -> {
-                Repository.checkValidStructure(args, 1, 1);
-                Repository.globalLog();
+                Repository.checkValidStructure(args, 1, 5);
+                Repository.globalLog(args);
             }
             case "find" -> {
-                Repository.checkValidStructure(args, 2, 2);
-                Repository.find(args[1]);
+                Repository.checkValidStructure(args, 2, 3);
+                Repository.find(args);
             }
             case "status" -> {
                 Repository.checkValidStructure(args, 1, 1);
@@ -71,11 +85,35 @@ public class Main {
                 Repository.checkValidStructure(args, 2, 2);
                 Repository.merge(args[1]);
             }
+            case "diff" -> {
+                Repository.checkValidStructure(args, 1, 5);
+                Repository.diff(args);
+            }
+            case "repack" -> {
+                Repository.checkValidStructure(args, 1, 1);
+                Repository.repack();
+            }
+            case "gc" -> {
+                Repository.checkValidStructure(args, 1, 4);
+                Repository.gc(args);
+            }
+            case "fsck" -> {
+                Repository.checkValidStructure(args, 1, 1);
+                Repository.fsck();
+            }
+            case "daemon" -> {
+                Repository.checkValidStructure(args, 1, 1);
+                Daemon.serve();
+            }
             case "help" -> {
                 Repository.checkValidArguments(args, 1, 1);
                 System.out.println(VALID_COMMANDS);
             }
             default -> System.out.println("No command with that name exists.\n" + VALID_COMMANDS);
         }
+        FileStager.saveIndex();
+        FileRegistry.saveAll();
+        Transaction.commit();
+        ObjectCache.printStats();
     }
 }
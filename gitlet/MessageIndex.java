@@ -0,0 +1,356 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the index of commit messages, which finds commits by their message without going
+ * through every commit object. The index is split into 256 message buckets and 256 token buckets, files in
+ * MESSAGE_INDEX_DIR named by the first byte of the sha1-hash of a message or of a token. A message
+ * bucket holds the hash, date and message of every commit whose message falls into it, and a token
+ * bucket holds the token, hash and date for every word of every message that falls into it.
+ *
+ * A new commit is appended to its buckets, so the index never has to be rewritten. An exact
+ * message is found by reading a single message bucket, and the words of a message by reading one
+ * token bucket per word. A substring that contains a whole word only reads the commits that have
+ * that word, any other substring is looked for in every message bucket. Repositories created before
+ * the index existed get it built from their commit objects the first time it is needed.
+ *
+ * @author Vipul Sharma
+ */
+public class MessageIndex {
+	/** Number of buckets of each kind. */
+	private static final int BUCKET_COUNT = 256;
+
+	/** Size of a hash in bytes. */
+	private static final int HASH_SIZE = UID_LENGTH / 2;
+
+	/** Longest message or token a record may have, anything longer is the tail of a cut-short
+	 * record. */
+	private static final int MAX_STRING_LENGTH = 1 << 24;
+
+	/** Separates the words of a message. */
+	private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	/** Orders commits from the newest to the oldest, and by hash for commits made at the same time. */
+	private static final Comparator<Entry> NEWEST_FIRST = Comparator.comparingLong(Entry::getDate)
+			.reversed().thenComparing(Entry::getHash);
+
+	/** Adds a newly created commit to the index. */
+	public static void add(Commit commit) {
+		if (!MESSAGE_INDEX_DIR.isDirectory()) {
+			// the new commit is already in the commit objects the index is built from
+			rebuild();
+			return;
+		}
+		try {
+			appendRecord(messageBucket(commit.getMessage()), messageRecord(commit));
+			for (String token : tokenize(commit.getMessage())) {
+				appendRecord(tokenBucket(token), tokenRecord(token, commit));
+			}
+		} catch (IOException excp) {
+			exitWithError("Unable to update the index of commit messages - " + excp.getMessage(), false);
+		}
+	}
+
+	/** Returns the commits with exactly the given message, newest first. */
+	public static List<Entry> findExact(String message) {
+		List<Entry> found = new ArrayList<>();
+		for (MessageRecord record : readMessageBucket(messageBucket(message))) {
+			if (record.message.equals(message)) {
+				found.add(record.entry);
+			}
+		}
+		return sortAndDeduplicate(found);
+	}
+
+	/** Returns the commits whose message has every word of the given text, ignoring case, newest
+	 * first. */
+	public static List<Entry> findWords(String words) {
+		Map<String, Entry> found = null;
+		for (String token : tokenize(words)) {
+			Map<String, Entry> withToken = new HashMap<>();
+			for (Entry entry : readTokenBucket(token)) {
+				if (found == null || found.containsKey(entry.hash)) {
+					withToken.put(entry.hash, entry);
+				}
+			}
+			found = withToken;
+		}
+		return found == null ? List.of() : sortAndDeduplicate(new ArrayList<>(found.values()));
+	}
+
+	/** Returns the commits whose message contains the given text, ignoring case, newest first. */
+	public static List<Entry> findSubstring(String text) {
+		String lowerCaseText = text.toLowerCase(Locale.ROOT);
+		String wholeWord = longestWholeWord(lowerCaseText);
+		List<Entry> found = new ArrayList<>();
+
+		if (wholeWord != null) {
+			for (Entry entry : readTokenBucket(wholeWord)) {
+				String message = Commit.getCommitFromHash(entry.hash).getMessage();
+				if (message.toLowerCase(Locale.ROOT).contains(lowerCaseText)) {
+					found.add(entry);
+				}
+			}
+		} else {
+			ensureBuilt();
+			for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+				for (MessageRecord record : readMessageBucket(bucketFile("m", bucket))) {
+					if (record.message.toLowerCase(Locale.ROOT).contains(lowerCaseText)) {
+						found.add(record.entry);
+					}
+				}
+			}
+		}
+		return sortAndDeduplicate(found);
+	}
+
+	/** Deletes the index and builds it again from all the commit objects. */
+	public static void rebuild() {
+		Map<File, ByteArrayOutputStream> buckets = new HashMap<>();
+		File[] commitFilesList = COMMIT_OBJECT_DIR.listFiles();
+
+		try {
+			if (commitFilesList != null) {
+				for (File commitFile : commitFilesList) {
+					if (!BlobStore.isBlobName(commitFile.getName())) {
+						continue;
+					}
+					Commit commit = Commit.readCommit(commitFile);
+					buckets.computeIfAbsent(messageBucket(commit.getMessage()), file -> new ByteArrayOutputStream())
+							.write(messageRecord(commit));
+					for (String token : tokenize(commit.getMessage())) {
+						buckets.computeIfAbsent(tokenBucket(token), file -> new ByteArrayOutputStream())
+								.write(tokenRecord(token, commit));
+					}
+				}
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+
+		File[] oldBuckets = MESSAGE_INDEX_DIR.listFiles();
+		if (oldBuckets != null) {
+			for (File oldBucket : oldBuckets) {
+				if (!buckets.containsKey(oldBucket) && !oldBucket.delete()) {
+					exitWithError("Could not delete file - " + oldBucket.getName(), false);
+				}
+			}
+		} else if (!MESSAGE_INDEX_DIR.mkdir()) {
+			exitWithError("Could not initialize the index of commit messages.", false);
+		}
+		for (var bucketAndContents : buckets.entrySet()) {
+			writeContentsAtomically(bucketAndContents.getKey(), bucketAndContents.getValue().toByteArray());
+		}
+	}
+
+	/** Returns the lower-case words of the given text, each one once. */
+	private static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String token : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+
+	/** A commit found in the index. */
+	public static class Entry {
+		/** Hash of the commit. */
+		private final String hash;
+
+		/** Date of the commit, in milliseconds since the epoch. */
+		private final long date;
+
+		Entry(String hash, long date) {
+			this.hash = hash;
+			this.date = date;
+		}
+
+		/** Returns the hash of the commit. */
+		public String getHash() {
+			return this.hash;
+		}
+
+		/** Returns the date of the commit, in milliseconds since the epoch. */
+		public long getDate() {
+			return this.date;
+		}
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** A record of a message bucket. */
+	private static class MessageRecord {
+		private final Entry entry;
+		private final String message;
+
+		MessageRecord(Entry entry, String message) {
+			this.entry = entry;
+			this.message = message;
+		}
+	}
+
+	/** Builds the index if it does not exist yet. */
+	private static void ensureBuilt() {
+		if (!MESSAGE_INDEX_DIR.isDirectory()) {
+			rebuild();
+		}
+	}
+
+	/** Returns the message bucket of the given message. */
+	private static File messageBucket(String message) {
+		return bucketFile("m", Integer.parseInt(sha1(message).substring(0, 2), 16));
+	}
+
+	/** Returns the token bucket of the given token. */
+	private static File tokenBucket(String token) {
+		return bucketFile("t", Integer.parseInt(sha1(token).substring(0, 2), 16));
+	}
+
+	/** Returns the bucket file of the given kind and number. */
+	private static File bucketFile(String kind, int bucket) {
+		return join(MESSAGE_INDEX_DIR, kind + String.format("%02x", bucket));
+	}
+
+	/** Returns the record of the given commit in its message bucket, its hash, date and message. */
+	private static byte[] messageRecord(Commit commit) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.write(fromHexString(commit.getHash()));
+			out.writeLong(commit.getDate().getTime());
+			writeString(out, commit.getMessage());
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Returns the record of the given commit in the bucket of the given token, the token followed
+	 * by the hash and date of the commit. */
+	private static byte[] tokenRecord(String token, Commit commit) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeString(out, token);
+			out.write(fromHexString(commit.getHash()));
+			out.writeLong(commit.getDate().getTime());
+		}
+		return bytes.toByteArray();
+	}
+
+	/** Appends a record to the given bucket in a single write. */
+	private static void appendRecord(File bucket, byte[] record) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(bucket, true)) {
+			out.write(record);
+		}
+	}
+
+	/** Returns all the records of the given message bucket. A record cut short by a command that
+	 * was interrupted while appending it is left out. */
+	private static List<MessageRecord> readMessageBucket(File bucket) {
+		ensureBuilt();
+		List<MessageRecord> records = new ArrayList<>();
+		if (!bucket.isFile()) {
+			return records;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(bucket)))) {
+			byte[] hash = new byte[HASH_SIZE];
+			while (true) {
+				in.readFully(hash);
+				long date = in.readLong();
+				records.add(new MessageRecord(new Entry(toHexString(hash), date), readString(in)));
+			}
+		} catch (EOFException excp) {
+			return records;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns the commits in the bucket of the given token that have that token. */
+	private static List<Entry> readTokenBucket(String token) {
+		ensureBuilt();
+		List<Entry> entries = new ArrayList<>();
+		File bucket = tokenBucket(token);
+		if (!bucket.isFile()) {
+			return entries;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(bucket)))) {
+			byte[] hash = new byte[HASH_SIZE];
+			while (true) {
+				String recordToken = readString(in);
+				in.readFully(hash);
+				long date = in.readLong();
+				if (recordToken.equals(token)) {
+					entries.add(new Entry(toHexString(hash), date));
+				}
+			}
+		} catch (EOFException excp) {
+			return entries;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns the longest word of the given lower-case text that is a whole word of every message
+	 * that contains the text, i.e. that has a separator on both sides within the text, or null if
+	 * there is none. */
+	private static String longestWholeWord(String text) {
+		String[] parts = WORD_SEPARATOR.split(text, -1);
+		String longest = null;
+		for (int i = 1; i < parts.length - 1; i++) {
+			if (!parts[i].isEmpty() && (longest == null || parts[i].length() > longest.length())) {
+				longest = parts[i];
+			}
+		}
+		return longest;
+	}
+
+	/** Sorts the given commits from the newest to the oldest, keeping each commit once. */
+	private static List<Entry> sortAndDeduplicate(List<Entry> entries) {
+		Map<String, Entry> unique = new LinkedHashMap<>();
+		for (Entry entry : entries) {
+			unique.putIfAbsent(entry.hash, entry);
+		}
+		List<Entry> sorted = new ArrayList<>(unique.values());
+		sorted.sort(NEWEST_FIRST);
+		return sorted;
+	}
+
+	/** Writes a String preceded by its length in bytes. */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Reads a String written by writeString. */
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_STRING_LENGTH) {
+			throw new EOFException();
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache of objects read from the repository, keyed by their hash. Objects are named by the hash
+ * of their contents and never change, so a cached object stays valid for as long as the process
+ * runs, whether that is a single command or a whole daemon session. Each cache holds objects up to
+ * a total weight and evicts the least recently used ones beyond it, and counts its hits and misses.
+ *
+ * Setting the GITLET_CACHE_STATS environment variable prints the counters of every cache at the
+ * end of each command.
+ *
+ * @author Vipul Sharma
+ */
+public class ObjectCache<V> {
+	/** Environment variable that turns on printing the counters of the caches. */
+	public static final String STATS_VARIABLE = "GITLET_CACHE_STATS";
+
+	/** Commits, weighed as one each. */
+	public static final ObjectCache<Commit> COMMITS = new ObjectCache<>("commits", 4096, 1,
+			commit -> 1);
+
+	/** Tree objects, weighed by their number of entries. */
+	public static final ObjectCache<Tree> TREES = new ObjectCache<>("trees", 1 << 20, 1 << 20,
+			Tree::size);
+
+	/** The complete maps of file paths to blobs of trees, weighed by their number of files. */
+	public static final ObjectCache<Map<String, String>> MANIFESTS = new ObjectCache<>("manifests",
+			1 << 20, 1 << 20, Map::size);
+
+	/** Contents of blobs of at most 64 KB, weighed by their size, 16 MB in total. */
+	public static final ObjectCache<byte[]> BLOBS = new ObjectCache<>("blobs", 16L << 20, 64L << 10,
+			contents -> contents.length);
+
+	/** Name of the cache, for its counters. */
+	private final String name;
+
+	/** Most total weight of the objects in the cache. */
+	private final long maxWeight;
+
+	/** Objects heavier than this are never cached. */
+	private final long maxEntryWeight;
+
+	/** Returns the weight of an object. */
+	private final ToLongFunction<V> weigher;
+
+	/** The cached objects, from the least to the most recently used. */
+	private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** Total weight of the cached objects. */
+	private long weight;
+
+	/** Number of lookups that found their object in the cache. */
+	private long hits;
+
+	/** Number of lookups that had to load their object. */
+	private long misses;
+
+	/** Number of objects evicted to make room for others. */
+	private long evictions;
+
+	private ObjectCache(String name, long maxWeight, long maxEntryWeight, ToLongFunction<V> weigher) {
+		this.name = name;
+		this.maxWeight = maxWeight;
+		this.maxEntryWeight = maxEntryWeight;
+		this.weigher = weigher;
+	}
+
+	/** Returns the object with the given hash, loading it with LOADER if it is not cached. Objects
+	 * are loaded outside the lock of the cache, so threads only wait for each other's lookups. */
+	public V get(String hash, Function<String, V> loader) {
+		synchronized (this) {
+			V value = entries.get(hash);
+			if (value != null) {
+				hits += 1;
+				return value;
+			}
+			misses += 1;
+		}
+
+		V value = loader.apply(hash);
+		put(hash, value);
+		return value;
+	}
+
+	/** Caches the object with the given hash, unless it is too heavy to be cached. */
+	public synchronized void put(String hash, V value) {
+		if (value == null) {
+			return;
+		}
+		long valueWeight = weigher.applyAsLong(value);
+		if (valueWeight > maxEntryWeight) {
+			return;
+		}
+
+		V previous = entries.put(hash, value);
+		if (previous != null) {
+			weight -= weigher.applyAsLong(previous);
+		}
+		weight += valueWeight;
+
+		Iterator<V> leastRecentlyUsed = entries.values().iterator();
+		while (weight > maxWeight && leastRecentlyUsed.hasNext()) {
+			weight -= weigher.applyAsLong(leastRecentlyUsed.next());
+			leastRecentlyUsed.remove();
+			evictions += 1;
+		}
+	}
+
+	/** Empties every cache, once objects they may hold have been deleted. The counters are kept. */
+	public static void clearAll() {
+		for (ObjectCache<?> cache : List.of(COMMITS, TREES, MANIFESTS, BLOBS)) {
+			synchronized (cache) {
+				cache.entries.clear();
+				cache.weight = 0;
+			}
+		}
+	}
+
+	/** Returns the counters of this cache, in the form printed by printStats. */
+	@Override
+	public synchronized String toString() {
+		return name + ": " + hits + " hit(s), " + misses + " miss(es), " + evictions + " eviction(s), "
+				+ entries.size() + " cached, weight " + weight + "/" + maxWeight;
+	}
+
+	/** Prints the counters of every cache to standard error if STATS_VARIABLE is set. */
+	public static void printStats() {
+		if (System.getenv(STATS_VARIABLE) == null) {
+			return;
+		}
+		for (ObjectCache<?> cache : List.of(COMMITS, TREES, MANIFESTS, BLOBS)) {
+			System.err.println(cache);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.util.Arrays;
+
+import static gitlet.Utils.*;
+
+/**
+ * A set of object ids kept as raw 20-byte hashes in a single open-addressed table, so every id
+ * costs about 27 bytes instead of the few hundred a HashSet of Strings takes. Hashes are already
+ * evenly spread, so the first bytes of an id are used as its slot, and collisions are resolved by
+ * probing the next slots. The all-zero id marks an empty slot and is tracked on its own.
+ *
+ * @author Vipul Sharma
+ */
+public class ObjectIdSet {
+	/** Size of an id in bytes. */
+	private static final int ID_SIZE = UID_LENGTH / 2;
+
+	/** Number of slots of a new set. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** An empty slot. */
+	private static final byte[] EMPTY_SLOT = new byte[ID_SIZE];
+
+	/** The slots, ID_SIZE bytes each. */
+	private byte[] slots = new byte[INITIAL_CAPACITY * ID_SIZE];
+
+	/** Number of slots, always a power of two. */
+	private int capacity = INITIAL_CAPACITY;
+
+	/** Number of ids in the set. */
+	private int size;
+
+	/** Whether the set holds the all-zero id, which cannot be kept in a slot. */
+	private boolean hasZeroId;
+
+	/** Adds the given hash to the set, returns true if it was not already in it. */
+	public boolean add(String hash) {
+		byte[] id = fromHexString(hash);
+		if (Arrays.equals(id, EMPTY_SLOT)) {
+			boolean added = !hasZeroId;
+			hasZeroId = true;
+			size += added ? 1 : 0;
+			return added;
+		}
+
+		int slot = findSlot(slots, capacity, id);
+		if (!isEmpty(slots, slot)) {
+			return false;
+		}
+		System.arraycopy(id, 0, slots, slot * ID_SIZE, ID_SIZE);
+		size += 1;
+		if (size > capacity / 4 * 3) {
+			grow();
+		}
+		return true;
+	}
+
+	/** Returns true if the given hash is in the set. */
+	public boolean contains(String hash) {
+		byte[] id = fromHexString(hash);
+		if (Arrays.equals(id, EMPTY_SLOT)) {
+			return hasZeroId;
+		}
+		return !isEmpty(slots, findSlot(slots, capacity, id));
+	}
+
+	/** Returns the number of ids in the set. */
+	public int size() {
+		return this.size;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns the slot of TABLE that holds the given id, or the empty slot it would go in. */
+	private static int findSlot(byte[] table, int tableCapacity, byte[] id) {
+		int slot = (((id[0] & 0xff) << 24) | ((id[1] & 0xff) << 16) | ((id[2] & 0xff) << 8) | (id[3] & 0xff))
+				& (tableCapacity - 1);
+		while (!isEmpty(table, slot)
+				&& !Arrays.equals(table, slot * ID_SIZE, slot * ID_SIZE + ID_SIZE, id, 0, ID_SIZE)) {
+			slot = (slot + 1) & (tableCapacity - 1);
+		}
+		return slot;
+	}
+
+	/** Returns true if the given slot of TABLE is empty. */
+	private static boolean isEmpty(byte[] table, int slot) {
+		return Arrays.equals(table, slot * ID_SIZE, slot * ID_SIZE + ID_SIZE, EMPTY_SLOT, 0, ID_SIZE);
+	}
+
+	/** Doubles the number of slots, moving every id to its slot in the bigger table. */
+	private void grow() {
+		int newCapacity = capacity * 2;
+		byte[] newSlots = new byte[newCapacity * ID_SIZE];
+		byte[] id = new byte[ID_SIZE];
+
+		for (int slot = 0; slot < capacity; slot++) {
+			if (!isEmpty(slots, slot)) {
+				System.arraycopy(slots, slot * ID_SIZE, id, 0, ID_SIZE);
+				System.arraycopy(id, 0, newSlots, findSlot(newSlots, newCapacity, id) * ID_SIZE, ID_SIZE);
+			}
+		}
+		slots = newSlots;
+		capacity = newCapacity;
+	}
+}
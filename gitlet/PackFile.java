@@ -0,0 +1,666 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents a packfile, a single file in PACK_DIR that stores many blobs, each one either
+ * compressed whole or compressed as a delta against a similar blob stored before it. Every
+ * packfile comes with an index that maps the hash of each packed blob to its offset in the
+ * packfile, sorted by hash and searched through a fan-out table over the first byte of the hash.
+ *
+ * @author Vipul Sharma
+ */
+public class PackFile {
+	/** Magic numbers at the start of a packfile ("GPK1") and of its index ("GPI1"). */
+	private static final int PACK_SIGNATURE = 0x47504b31;
+	private static final int INDEX_SIGNATURE = 0x47504931;
+
+	/** Kinds of packfile entries. */
+	private static final int FULL_ENTRY = 1;
+	private static final int DELTA_ENTRY = 2;
+
+	/** Delta instruction that copies a range of the base blob, other values insert literal bytes. */
+	private static final int DELTA_COPY = 0x80;
+	private static final int MAX_DELTA_INSERT = 0x7f;
+
+	/** Number of previously packed blobs that are tried as delta bases for every blob. */
+	private static final int DELTA_WINDOW = 10;
+
+	/** Maximum number of deltas that have to be applied to rebuild any packed blob. */
+	private static final int MAX_DELTA_DEPTH = 50;
+
+	/** Size of the blocks of the base blob that are indexed while looking for copies. */
+	private static final int DELTA_BLOCK_SIZE = 16;
+
+	/** Blobs larger than this stay loose, so that they can still be streamed in and out. */
+	private static final long BIG_BLOB_THRESHOLD = 64L * 1024 * 1024;
+
+	/** All the packfiles of the repository, loaded lazily once per command. */
+	private static List<PackFile> loadedPacks;
+
+	/** The packfile itself. */
+	private final File packFile;
+
+	/** The index of this packfile. */
+	private final File indexFile;
+
+	/** fanout[b] is the number of packed blobs whose hash starts with a byte less than or equal to b. */
+	private final int[] fanout = new int[256];
+
+	/** Hashes of the packed blobs in sorted order. */
+	private final String[] hashes;
+
+	/** Offset of every packed blob in the packfile, in the same order as hashes. */
+	private final long[] offsets;
+
+	/** Size of every packed blob once rebuilt, in the same order as hashes. */
+	private final long[] sizes;
+
+	private PackFile(File indexFile) {
+		this.indexFile = indexFile;
+		String indexName = indexFile.getName();
+		this.packFile = join(PACK_DIR, indexName.substring(0, indexName.length() - ".idx".length())
+				+ ".pack");
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)))) {
+			if (in.readInt() != INDEX_SIGNATURE) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+			for (int i = 0; i < fanout.length; i++) {
+				fanout[i] = in.readInt();
+			}
+
+			int count = fanout[fanout.length - 1];
+			this.hashes = new String[count];
+			this.offsets = new long[count];
+			this.sizes = new long[count];
+			byte[] hash = new byte[UID_LENGTH / 2];
+			for (int i = 0; i < count; i++) {
+				in.readFully(hash);
+				hashes[i] = toHexString(hash);
+			}
+			for (int i = 0; i < count; i++) {
+				offsets[i] = in.readLong();
+			}
+			for (int i = 0; i < count; i++) {
+				sizes[i] = in.readLong();
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Forgets the loaded packfiles, so they are listed again the next time they are needed. */
+	static synchronized void reset() {
+		loadedPacks = null;
+	}
+
+	/** Returns true if the blob with the given name is stored in any packfile. */
+	public static boolean contains(String blobName) {
+		for (PackFile pack : packs()) {
+			if (pack.find(blobName) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns the contents of the packed blob with the given name, or null if it is not packed. */
+	public static byte[] read(String blobName) {
+		for (PackFile pack : packs()) {
+			int position = pack.find(blobName);
+			if (position >= 0) {
+				try (RandomAccessFile raf = new RandomAccessFile(pack.packFile, "r")) {
+					return readEntry(raf, pack.offsets[position]);
+				} catch (IOException excp) {
+					throw new IllegalArgumentException(excp.getMessage());
+				}
+			}
+		}
+		return null;
+	}
+
+	/** Returns the names of the blobs stored in every packfile. */
+	public static List<String> packedBlobNames() {
+		List<String> blobNames = new ArrayList<>();
+		for (PackFile pack : packs()) {
+			blobNames.addAll(Arrays.asList(pack.hashes));
+		}
+		return blobNames;
+	}
+
+	/** Rolls all the loose blobs, except the very big ones, and the blobs of the existing packfiles
+	 * into a single new packfile. Blobs are sorted by the path they were committed under and then
+	 * by size, so that each blob is stored as a delta against one of the few similar blobs stored
+	 * right before it. */
+	public static void repack() {
+		List<PackFile> oldPacks = packs();
+		Map<String, String> blobPaths = collectBlobPaths();
+		List<PackCandidate> candidates = new ArrayList<>();
+		Set<String> seenBlobs = new HashSet<>();
+
+		for (String fileName : Objects.requireNonNull(GITLET_DIR.list())) {
+			if (BlobStore.isBlobName(fileName) && seenBlobs.add(fileName)
+					&& BlobStore.looseBlobFile(fileName).length() <= BIG_BLOB_THRESHOLD) {
+				candidates.add(new PackCandidate(fileName, blobPaths.getOrDefault(fileName, ""),
+						BlobStore.looseBlobFile(fileName).length()));
+			}
+		}
+		for (PackFile pack : oldPacks) {
+			for (int i = 0; i < pack.hashes.length; i++) {
+				if (seenBlobs.add(pack.hashes[i])) {
+					candidates.add(new PackCandidate(pack.hashes[i],
+							blobPaths.getOrDefault(pack.hashes[i], ""), pack.sizes[i]));
+				}
+			}
+		}
+
+		if (candidates.isEmpty()) {
+			System.out.println("Nothing to repack.");
+			return;
+		}
+		if (!PACK_DIR.exists() && !PACK_DIR.mkdir()) {
+			exitWithError("Could not create the pack directory.", false);
+		}
+		candidates.sort(Comparator.comparing((PackCandidate c) -> c.path)
+				.thenComparing(c -> -c.size).thenComparing(c -> c.blobName));
+
+		File newPackFile = createPack(candidates);
+		String packName = newPackFile.getName().substring(0, newPackFile.getName().length() - ".pack".length());
+		long deltaCount = candidates.stream().filter(candidate -> candidate.depth > 0).count();
+
+		for (PackFile pack : oldPacks) {
+			if (!pack.packFile.equals(newPackFile)) {
+				deleteFileIfExists(pack.indexFile);
+				deleteFileIfExists(pack.packFile);
+			}
+		}
+		for (PackCandidate candidate : candidates) {
+			deleteFileIfExists(BlobStore.looseBlobFile(candidate.blobName));
+		}
+		loadedPacks = null;
+
+		System.out.println("Packed " + candidates.size() + " blob(s) into " + truncateString(packName, 12)
+				+ ", " + deltaCount + " of them as deltas (" + newPackFile.length() + " bytes).");
+	}
+
+	/** Removes the packed blobs that the given garbage collector did not find reachable. Every
+	 * packfile holding such blobs is written again with only its reachable blobs, in the order they
+	 * were packed in, or deleted if none are left. Packfiles modified within the grace period are
+	 * kept as they are. */
+	public static void prune(GarbageCollector collector) {
+		for (PackFile pack : packs()) {
+			List<PackCandidate> keptBlobs = new ArrayList<>();
+			List<String> unreachableBlobs = new ArrayList<>();
+			for (int i = 0; i < pack.hashes.length; i++) {
+				if (collector.isReachable(pack.hashes[i])) {
+					PackCandidate candidate = new PackCandidate(pack.hashes[i], "", pack.sizes[i]);
+					candidate.offset = pack.offsets[i];
+					keptBlobs.add(candidate);
+				} else {
+					unreachableBlobs.add(pack.hashes[i]);
+				}
+			}
+
+			if (unreachableBlobs.isEmpty()) {
+				continue;
+			} else if (collector.isRecent(pack.packFile)) {
+				collector.recordKept(unreachableBlobs.size());
+				continue;
+			}
+			unreachableBlobs.forEach(collector::recordPackedBlob);
+			if (collector.isDryRun()) {
+				continue;
+			}
+
+			long oldSize = pack.packFile.length() + pack.indexFile.length();
+			long newSize = 0;
+			if (!keptBlobs.isEmpty()) {
+				keptBlobs.sort(Comparator.comparingLong(candidate -> candidate.offset));
+				File newPackFile = createPack(keptBlobs);
+				newSize = newPackFile.length() + indexFileOf(newPackFile).length();
+			}
+			deleteFileIfExists(pack.indexFile);
+			deleteFileIfExists(pack.packFile);
+			collector.recordFreed(oldSize - newSize);
+		}
+		loadedPacks = null;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns all the packfiles of the repository. */
+	private static synchronized List<PackFile> packs() {
+		if (loadedPacks == null) {
+			loadedPacks = new ArrayList<>();
+			File[] indexFiles = PACK_DIR.listFiles((dir, name) -> name.endsWith(".idx"));
+
+			if (indexFiles != null) {
+				Arrays.sort(indexFiles);
+				for (File indexFile : indexFiles) {
+					loadedPacks.add(new PackFile(indexFile));
+				}
+			}
+		}
+		return loadedPacks;
+	}
+
+	/** Returns the position of the given hash in this pack's index, or -1 if it is not packed. */
+	private int find(String blobName) {
+		if (!BlobStore.isBlobName(blobName)) {
+			return -1;
+		}
+		int firstByte = Integer.parseInt(blobName.substring(0, 2), 16);
+		int low = firstByte == 0 ? 0 : fanout[firstByte - 1];
+		int high = fanout[firstByte] - 1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int comparison = hashes[mid].compareTo(blobName);
+			if (comparison == 0) {
+				return mid;
+			} else if (comparison < 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return -1;
+	}
+
+	/** Returns the hash of every committed or staged blob mapped to the path it was stored under. */
+	private static Map<String, String> collectBlobPaths() {
+		Map<String, String> blobPaths = new HashMap<>();
+		Set<String> visitedTrees = new HashSet<>();
+
+		for (File commitFile : Objects.requireNonNull(COMMIT_OBJECT_DIR.listFiles())) {
+			if (BlobStore.isBlobName(commitFile.getName())) {
+				Commit commitObject = Commit.readCommit(commitFile);
+				Tree.collectBlobPaths(commitObject.getTreeHash(), "", blobPaths, visitedTrees);
+			}
+		}
+		for (var fileAndHash : FileStager.getStagedFiles().entrySet()) {
+			blobPaths.putIfAbsent(fileAndHash.getValue(), fileAndHash.getKey());
+		}
+		return blobPaths;
+	}
+
+	/** Writes the sorted candidates to a new packfile and its index, both named after the checksum
+	 * of the packfile, and returns the packfile. */
+	private static File createPack(List<PackCandidate> candidates) {
+		File tempPackFile = createTempFile("pack-");
+		writePack(tempPackFile, candidates);
+		File newPackFile = join(PACK_DIR, "pack-" + toHexString(readPackChecksum(tempPackFile)) + ".pack");
+
+		File tempIndexFile = createTempFile("idx-");
+		writeIndex(tempIndexFile, candidates);
+		if (!tempPackFile.renameTo(newPackFile) || !tempIndexFile.renameTo(indexFileOf(newPackFile))) {
+			exitWithError("Could not create the packfile.", false);
+		}
+		// the blobs are removed from elsewhere next, so the packfile has to be durable first
+		Transaction.sync(newPackFile, indexFileOf(newPackFile));
+		return newPackFile;
+	}
+
+	/** Creates a uniquely named temporary file in PACK_DIR whose name starts with PREFIX. */
+	private static File createTempFile(String prefix) {
+		try {
+			return Files.createTempFile(PACK_DIR.toPath(), prefix, ".tmp").toFile();
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns the index of the given packfile. */
+	private static File indexFileOf(File packFile) {
+		String packName = packFile.getName();
+		return join(PACK_DIR, packName.substring(0, packName.length() - ".pack".length()) + ".idx");
+	}
+
+	/** Writes the sorted candidates to a packfile followed by its checksum, and records the offset
+	 * of each candidate and the depth of its chain of deltas. */
+	private static void writePack(File packFile, List<PackCandidate> candidates) {
+		Deque<PackCandidate> window = new ArrayDeque<>();
+		MessageDigest digest = newSha1Digest();
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(packFile))) {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			new DataOutputStream(header).writeInt(PACK_SIGNATURE);
+			new DataOutputStream(header).writeInt(candidates.size());
+			long offset = writeDigested(out, digest, header.toByteArray());
+
+			for (PackCandidate candidate : candidates) {
+				candidate.contents = BlobStore.readBlob(candidate.blobName);
+				candidate.size = candidate.contents.length;
+				byte[] compressed = deflate(candidate.contents);
+				PackCandidate base = null;
+
+				for (PackCandidate windowEntry : window) {
+					if (windowEntry.depth >= MAX_DELTA_DEPTH || !isWorthDelta(windowEntry, candidate)) {
+						continue;
+					}
+					byte[] delta = createDelta(windowEntry.contents, candidate.contents);
+					byte[] compressedDelta = deflate(delta);
+					if (compressedDelta.length < compressed.length) {
+						compressed = compressedDelta;
+						base = windowEntry;
+						candidate.entrySize = delta.length;
+					}
+				}
+
+				candidate.offset = offset;
+				ByteArrayOutputStream entry = new ByteArrayOutputStream();
+				DataOutputStream entryOut = new DataOutputStream(entry);
+				if (base == null) {
+					entryOut.writeByte(FULL_ENTRY);
+					writeVarInt(entryOut, candidate.contents.length);
+				} else {
+					entryOut.writeByte(DELTA_ENTRY);
+					entryOut.writeLong(base.offset);
+					writeVarInt(entryOut, candidate.entrySize);
+					candidate.depth = base.depth + 1;
+				}
+				writeVarInt(entryOut, compressed.length);
+				entryOut.write(compressed);
+				offset += writeDigested(out, digest, entry.toByteArray());
+
+				window.addFirst(candidate);
+				if (window.size() > DELTA_WINDOW) {
+					window.removeLast().contents = null;
+				}
+			}
+			out.write(digest.digest());
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Writes the index of a packfile that contains the given candidates. */
+	private static void writeIndex(File indexFile, List<PackCandidate> candidates) {
+		List<PackCandidate> sortedCandidates = new ArrayList<>(candidates);
+		sortedCandidates.sort(Comparator.comparing(c -> c.blobName));
+		int[] fanout = new int[256];
+
+		for (PackCandidate candidate : sortedCandidates) {
+			fanout[Integer.parseInt(candidate.blobName.substring(0, 2), 16)] += 1;
+		}
+		for (int i = 1; i < fanout.length; i++) {
+			fanout[i] += fanout[i - 1];
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile)))) {
+			out.writeInt(INDEX_SIGNATURE);
+			for (int count : fanout) {
+				out.writeInt(count);
+			}
+			for (PackCandidate candidate : sortedCandidates) {
+				out.write(fromHexString(candidate.blobName));
+			}
+			for (PackCandidate candidate : sortedCandidates) {
+				out.writeLong(candidate.offset);
+			}
+			for (PackCandidate candidate : sortedCandidates) {
+				out.writeLong(candidate.size);
+			}
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Reads the entry at the given offset, applying deltas until the whole blob is rebuilt. */
+	private static byte[] readEntry(RandomAccessFile raf, long offset) throws IOException {
+		raf.seek(offset);
+		int entryType = raf.readUnsignedByte();
+		long baseOffset = entryType == DELTA_ENTRY ? raf.readLong() : -1;
+		int size = readVarInt(raf);
+		byte[] compressed = new byte[readVarInt(raf)];
+		raf.readFully(compressed);
+		byte[] data = inflate(compressed, size);
+
+		if (entryType == FULL_ENTRY) {
+			return data;
+		}
+		return applyDelta(readEntry(raf, baseOffset), data);
+	}
+
+	/** Returns the checksum stored at the end of a packfile. */
+	private static byte[] readPackChecksum(File packFile) {
+		try (RandomAccessFile raf = new RandomAccessFile(packFile, "r")) {
+			byte[] checksum = new byte[UID_LENGTH / 2];
+			raf.seek(raf.length() - checksum.length);
+			raf.readFully(checksum);
+			return checksum;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Returns true if base and target are close enough in size for a delta to be worth trying. */
+	private static boolean isWorthDelta(PackCandidate base, PackCandidate target) {
+		long baseSize = base.contents.length;
+		long targetSize = target.contents.length;
+		return targetSize >= DELTA_BLOCK_SIZE && baseSize >= targetSize / 2 && baseSize <= targetSize * 2;
+	}
+
+	/** Returns a delta that rebuilds TARGET out of ranges copied from BASE and literal inserts. */
+	static byte[] createDelta(byte[] base, byte[] target) {
+		ByteArrayOutputStream delta = new ByteArrayOutputStream();
+		writeVarInt(delta, base.length);
+		writeVarInt(delta, target.length);
+
+		Map<Integer, Integer> blockIndex = new HashMap<>();
+		for (int i = 0; i + DELTA_BLOCK_SIZE <= base.length; i += DELTA_BLOCK_SIZE) {
+			blockIndex.putIfAbsent(blockHash(base, i), i);
+		}
+
+		int insertStart = 0;
+		int position = 0;
+		while (position + DELTA_BLOCK_SIZE <= target.length) {
+			Integer match = blockIndex.get(blockHash(target, position));
+			if (match == null || !Arrays.equals(base, match, match + DELTA_BLOCK_SIZE,
+					target, position, position + DELTA_BLOCK_SIZE)) {
+				position += 1;
+				continue;
+			}
+
+			int baseStart = match;
+			int targetStart = position;
+			int length = DELTA_BLOCK_SIZE;
+			while (targetStart + length < target.length && baseStart + length < base.length
+					&& base[baseStart + length] == target[targetStart + length]) {
+				length += 1;
+			}
+			while (baseStart > 0 && targetStart > insertStart
+					&& base[baseStart - 1] == target[targetStart - 1]) {
+				baseStart -= 1;
+				targetStart -= 1;
+				length += 1;
+			}
+
+			writeDeltaInsert(delta, target, insertStart, targetStart);
+			delta.write(DELTA_COPY);
+			writeVarInt(delta, baseStart);
+			writeVarInt(delta, length);
+			position = targetStart + length;
+			insertStart = position;
+		}
+		writeDeltaInsert(delta, target, insertStart, target.length);
+
+		return delta.toByteArray();
+	}
+
+	/** Rebuilds the target blob of a delta out of its base blob. */
+	static byte[] applyDelta(byte[] base, byte[] delta) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+			if (readVarInt(in) != base.length) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+			byte[] target = new byte[readVarInt(in)];
+			int position = 0;
+
+			while (in.available() > 0) {
+				int instruction = in.readUnsignedByte();
+				if (instruction == DELTA_COPY) {
+					int baseStart = readVarInt(in);
+					int length = readVarInt(in);
+					System.arraycopy(base, baseStart, target, position, length);
+					position += length;
+				} else {
+					in.readFully(target, position, instruction);
+					position += instruction;
+				}
+			}
+			return target;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Writes literal inserts for target[start, end) in chunks of at most MAX_DELTA_INSERT bytes. */
+	private static void writeDeltaInsert(ByteArrayOutputStream delta, byte[] target, int start, int end) {
+		while (start < end) {
+			int length = Math.min(MAX_DELTA_INSERT, end - start);
+			delta.write(length);
+			delta.write(target, start, length);
+			start += length;
+		}
+	}
+
+	/** Returns the hash of DELTA_BLOCK_SIZE bytes of the given array starting at START. */
+	private static int blockHash(byte[] bytes, int start) {
+		int hash = 0;
+		for (int i = start; i < start + DELTA_BLOCK_SIZE; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
+	}
+
+	/** Returns the given bytes compressed with deflate. */
+	private static byte[] deflate(byte[] bytes) {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+			out.write(bytes);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		} finally {
+			deflater.end();
+		}
+		return compressed.toByteArray();
+	}
+
+	/** Returns the given deflate-compressed bytes decompressed to SIZE bytes. */
+	private static byte[] inflate(byte[] compressed, int size) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] bytes = new byte[size];
+			int length = 0;
+			while (length < size && !inflater.finished()) {
+				length += inflater.inflate(bytes, length, size - length);
+				if (inflater.needsInput()) {
+					break;
+				}
+			}
+			if (length != size) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+			return bytes;
+		} catch (DataFormatException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/** Writes BYTES to OUT while adding them to DIGEST, returns the number of bytes written. */
+	private static long writeDigested(OutputStream out, MessageDigest digest, byte[] bytes)
+			throws IOException {
+		out.write(bytes);
+		digest.update(bytes);
+		return bytes.length;
+	}
+
+	/** Writes a non-negative int using 7 bits per byte, least significant group first. */
+	private static void writeVarInt(OutputStream out, int value) {
+		try {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Reads a non-negative int written by writeVarInt. */
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int nextByte;
+		do {
+			nextByte = in.readUnsignedByte();
+			value |= (nextByte & 0x7f) << shift;
+			shift += 7;
+		} while ((nextByte & 0x80) != 0);
+		return value;
+	}
+
+	/** Deletes the given file if it exists. */
+	private static void deleteFileIfExists(File file) {
+		if (file.exists() && !file.delete()) {
+			exitWithError("Could not delete file - " + file.getName(), false);
+		}
+	}
+
+	/** A blob that is about to be written to a new packfile. */
+	private static class PackCandidate {
+		private final String blobName;
+		private final String path;
+		private long size;
+		private byte[] contents;
+		private int entrySize;
+		private int depth;
+		private long offset;
+
+		PackCandidate(String blobName, String path, long size) {
+			this.blobName = blobName;
+			this.path = path;
+			this.size = size;
+		}
+	}
+}
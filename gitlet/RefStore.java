@@ -0,0 +1,220 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents the refs of the repository: one small file per branch in BRANCH_REFS_DIR holding the
+ * hash of its head commit, and a symbolic HEAD file naming the current branch. Reading, creating,
+ * moving or deleting a branch only touches its own file, whatever the number of branches.
+ *
+ * Every update is a compare-and-swap: a lock file is created next to the ref, only if it does not
+ * exist yet, the ref is checked to still hold the value this command read before, and the new
+ * value is then written through the transaction of the command, which renames it over the ref when
+ * the command ends. A ref that was moved by another command in the meantime is left as it is and
+ * the update fails.
+ *
+ * Repositories that kept every branch in the HEAD file, as "*name hash" lines, are moved to this
+ * layout the first time their refs are read.
+ *
+ * @author Vipul Sharma
+ */
+public class RefStore {
+	/** What the HEAD file holds before the name of the current branch. */
+	private static final String SYMBOLIC_REF_PREFIX = "ref: refs/heads/";
+
+	/** Suffix of the lock file of a ref. */
+	private static final String LOCK_SUFFIX = ".lock";
+
+	/** Name of the current branch, read once per command. */
+	private static String currentBranch;
+
+	/** The value of every ref read by the current command, null for a ref that did not exist. Updates
+	 * expect the ref to still hold it. */
+	private static final Map<String, String> readValues = new HashMap<>();
+
+	/** Creates the refs of a new repository, a single branch with the given head that is the
+	 * current branch. */
+	public static void initialize(String branchName, String commitHash) {
+		if (!BRANCH_REFS_DIR.isDirectory() && !BRANCH_REFS_DIR.mkdirs()) {
+			exitWithError("Could not initialize Gitlet refs directory.", false);
+		}
+		writeContentsAtomically(refFile(branchName), (commitHash + "\n").getBytes(StandardCharsets.UTF_8));
+		writeContentsAtomically(HEAD_FILE, (SYMBOLIC_REF_PREFIX + branchName + "\n")
+				.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Returns the name of the current branch. */
+	public static synchronized String currentBranch() {
+		if (currentBranch == null) {
+			String headContents = readContentsAsString(HEAD_FILE).trim();
+			if (!headContents.startsWith(SYMBOLIC_REF_PREFIX)) {
+				headContents = migrateLegacyHead(headContents);
+			}
+			currentBranch = headContents.substring(SYMBOLIC_REF_PREFIX.length());
+		}
+		return currentBranch;
+	}
+
+	/** Returns true if HEAD still holds every branch in the old "*name hash" format, which the
+	 * first read of the refs moves to one file per branch. */
+	public static synchronized boolean hasLegacyHead() {
+		return currentBranch == null && HEAD_FILE.isFile()
+				&& !readContentsAsString(HEAD_FILE).startsWith(SYMBOLIC_REF_PREFIX);
+	}
+
+	/** Returns the hash of the head commit of the given branch, or null if there is no such branch. */
+	public static synchronized String read(String branchName) {
+		currentBranch();
+		if (!readValues.containsKey(branchName)) {
+			readValues.put(branchName, isValidBranchName(branchName) ? readRef(refFile(branchName)) : null);
+		}
+		return readValues.get(branchName);
+	}
+
+	/** Returns true if a branch with the given name exists. */
+	public static boolean exists(String branchName) {
+		return read(branchName) != null;
+	}
+
+	/** Returns the names of all the branches in lexicographic order. */
+	public static List<String> branchNames() {
+		currentBranch();
+		return Objects.requireNonNullElse(plainFilenamesIn(BRANCH_REFS_DIR), List.<String>of()).stream()
+				.filter(name -> !name.endsWith(LOCK_SUFFIX)).toList();
+	}
+
+	/** Creates a branch with the given head, failing if it already exists. */
+	public static void create(String branchName, String commitHash) {
+		swapRef(branchName, null, commitHash);
+	}
+
+	/** Moves the head of the given branch to the given commit, failing if another command moved it
+	 * since this one read it. */
+	public static void update(String branchName, String commitHash) {
+		swapRef(branchName, read(branchName), commitHash);
+	}
+
+	/** Deletes the given branch, failing if another command moved it since this one read it. */
+	public static void delete(String branchName) {
+		swapRef(branchName, read(branchName), null);
+	}
+
+	/** Makes the given branch the current branch, failing if another command switched branches since
+	 * this one read HEAD. */
+	public static synchronized void setCurrentBranch(String branchName) {
+		String oldHead = SYMBOLIC_REF_PREFIX + currentBranch();
+		if (!compareAndSwap(HEAD_FILE, oldHead, SYMBOLIC_REF_PREFIX + branchName)) {
+			exitWithError("HEAD was changed by another command, please try again.", false);
+		}
+		currentBranch = branchName;
+	}
+
+	/** Returns true if the given name can be used as a branch name, i.e. is a single plain file name. */
+	public static boolean isValidBranchName(String branchName) {
+		return !branchName.isEmpty() && !branchName.startsWith(".") && !branchName.endsWith(LOCK_SUFFIX)
+				&& branchName.chars().noneMatch(c -> c == '*' || c == '/' || c == '\\' || Character.isWhitespace(c));
+	}
+
+	/** Forgets the refs read by the last command, so they are read again the next time they are needed. */
+	static synchronized void reset() {
+		currentBranch = null;
+		readValues.clear();
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Returns the ref file of the given branch. */
+	private static File refFile(String branchName) {
+		return join(BRANCH_REFS_DIR, branchName);
+	}
+
+	/** Returns the trimmed contents of the given ref file as the running transaction sees it, or
+	 * null if it does not exist. */
+	private static String readRef(File file) {
+		byte[] contents = Transaction.read(file);
+		return contents == null ? null : new String(contents, StandardCharsets.UTF_8).trim();
+	}
+
+	/** Changes the given branch from EXPECTEDHASH to NEWHASH, where null stands for no branch, and
+	 * exits if the branch no longer holds EXPECTEDHASH. */
+	private static synchronized void swapRef(String branchName, String expectedHash, String newHash) {
+		if (!compareAndSwap(refFile(branchName), expectedHash, newHash)) {
+			exitWithError(expectedHash == null ? "A branch with that name already exists."
+					: "Branch " + branchName + " was changed by another command, please try again.", false);
+		}
+		readValues.put(branchName, newHash);
+	}
+
+	/** Replaces the contents of the given file with NEWCONTENTS, or deletes it if NEWCONTENTS is
+	 * null, provided it still holds EXPECTEDCONTENTS, where null stands for no file. The lock file
+	 * makes sure only one command updates the file at a time, and the transaction of the command
+	 * writes it atomically. Returns false if the file did not hold EXPECTEDCONTENTS. */
+	private static boolean compareAndSwap(File file, String expectedContents, String newContents) {
+		File lockFile = new File(file.getPath() + LOCK_SUFFIX);
+		try {
+			Files.createFile(lockFile.toPath());
+		} catch (FileAlreadyExistsException excp) {
+			exitWithError("Unable to lock " + file.getName() + ", another command is updating it. If none "
+					+ "is, delete " + lockFile.getPath() + ".", false);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+
+		try {
+			if (!Objects.equals(readRef(file), expectedContents)) {
+				return false;
+			}
+			if (newContents == null) {
+				Transaction.delete(file);
+			} else {
+				Transaction.write(file, (newContents + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			return true;
+		} finally {
+			if (lockFile.exists() && !lockFile.delete()) {
+				System.out.println("Could not delete lock file - " + lockFile.getPath());
+			}
+		}
+	}
+
+	/** Writes a ref file for every branch of a HEAD file in the old "*name hash" format, and then
+	 * the symbolic HEAD, which is written last so an interrupted migration is simply done again.
+	 * Returns the new contents of HEAD. */
+	private static String migrateLegacyHead(String legacyHeadContents) {
+		if (!BRANCH_REFS_DIR.isDirectory() && !BRANCH_REFS_DIR.mkdirs()) {
+			exitWithError("Could not initialize Gitlet refs directory.", false);
+		}
+
+		String headContents = null;
+		for (String branch : legacyHeadContents.split("\n")) {
+			String[] nameAndHash = branch.trim().split(" ");
+			if (nameAndHash.length != 2) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+			String branchName = nameAndHash[0];
+			if (branchName.startsWith("*")) {
+				branchName = branchName.substring(1);
+				headContents = SYMBOLIC_REF_PREFIX + branchName;
+			}
+			if (!isValidBranchName(branchName)) {
+				exitWithError("Branch name " + branchName + " can not be moved to the refs directory.", false);
+			}
+			writeContentsAtomically(refFile(branchName), (nameAndHash[1] + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+
+		if (headContents == null) {
+			exitWithError(CORRUPTED_REPO, false);
+		}
+		writeContentsAtomically(HEAD_FILE, (headContents + "\n").getBytes(StandardCharsets.UTF_8));
+		return headContents;
+	}
+}
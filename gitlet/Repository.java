@@ -1,11 +1,18 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static gitlet.Utils.*;
 
@@ -30,11 +37,11 @@ public class Repository {
         }
     }
 
-    /** Exits if the repository has been corrupted. */
+    /** Exits if the repository has been corrupted. HEAD is the last file init writes, after the
+     *  initial commit, so a single lookup tells whether the repository was set up. The fsck
+     *  command checks everything else. */
     private static void checkCorruptedRepository() {
-        File[] commitObjectList = COMMIT_OBJECT_DIR.listFiles();
-
-        if (Objects.requireNonNull(commitObjectList).length == 0) {
+        if (!HEAD_FILE.isFile()) {
             exitWithError(CORRUPTED_REPO, false);
         }
     }
@@ -66,12 +73,57 @@ public class Repository {
 
         Commit initialCommit = new Commit("initial commit", null);
         Branch masterBranch = new Branch("master", initialCommit, true);
+        MessageIndex.add(initialCommit);
+        CommitJournal.append(initialCommit);
 
         System.out.println("Created an initial commit with the hash: " + initialCommit.getHash());
     }
 
     /******************************* ADD FUNCTION ****************************** //
-     /** Checks if the file exists and calls the function that adds the file to the staging area. */
+     /** Adds every given file, and every file under every given directory that is not ignored, to
+     * the staging area. Files are hashed and stored in parallel before any of them is staged, and
+     * tracked files that are the same as in the head commit are skipped unless named directly. */
+    public static void add(String[] fileNames) {
+        SortedMap<String, File> filesToAdd = new TreeMap<>();
+        Set<String> namedFiles = new HashSet<>();
+
+        for (String fileName : fileNames) {
+            File fileToAdd = new File(fileName);
+            String fileRelativePath = getRelativePath(fileToAdd).toString();
+
+            if (fileToAdd.isFile()) {
+                filesToAdd.put(fileRelativePath, fileToAdd);
+                namedFiles.add(fileRelativePath);
+            } else if (fileToAdd.isDirectory()) {
+                filesToAdd.putAll(WorkingTree.snapshot().getFilesUnder(fileRelativePath));
+            } else {
+                exitWithError("File does not exist.", false);
+            }
+        }
+
+        if (fileNames.length == 1 && namedFiles.size() == 1) {
+            add(fileNames[0], true);
+            return;
+        }
+
+        Map<String, BlobStore.StoredBlob> storedBlobs = storeBlobs(filesToAdd);
+        String headTreeHash = Branch.getCurrentBranchHead().getTreeHash();
+
+        for (var fileAndBlob : new TreeMap<>(storedBlobs).entrySet()) {
+            String fileRelativePath = fileAndBlob.getKey();
+            String blobName = fileAndBlob.getValue().getBlobName();
+            boolean unchanged = FileRegistry.tracked().contains(fileRelativePath)
+                    && !FileStager.isFileStaged(fileRelativePath)
+                    && !FileRegistry.removed().contains(fileRelativePath)
+                    && blobName.equals(Tree.lookup(headTreeHash, fileRelativePath));
+
+            if (namedFiles.contains(fileRelativePath) || !unchanged) {
+                checkAndStage(fileRelativePath, fileAndBlob.getValue(), fileRelativePath, true);
+            }
+        }
+    }
+
+    /** Checks if the file exists and calls the function that adds the file to the staging area. */
     public static void add(String fileName, boolean verbose) {
         File fileToAdd = new File(fileName);
 
@@ -85,7 +137,7 @@ public class Repository {
     /******************************* COMMIT FUNCTION ****************************** //
     /** Create a commit object. */
     public static void commit(String message) {
-        if ((INDEX_FILE.exists() && FileStager.getNumberOfStagedFiles() >= 1) || UNTRACKING_FILE.exists()) {
+        if (FileStager.getNumberOfStagedFiles() >= 1 || !FileRegistry.removed().isEmpty()) {
             String[] branchAndCommit = Branch.getBranchAndItsHead();
             Commit newCommit = Commit.cloneAndModifyCommit(branchAndCommit[1], message,
                     "", false);
@@ -114,7 +166,7 @@ public class Repository {
      user has not already done so. */
     public static void rm(String fileRelativePath) {
         boolean isFileStaged = FileStager.isFileStaged(fileRelativePath);
-        boolean isFileTrackedVar = isFileNameInFile(TRACKING_FILE, fileRelativePath);
+        boolean isFileTrackedVar = FileRegistry.tracked().contains(fileRelativePath);
 
         if (!isFileTrackedVar && !isFileStaged) {
             System.out.println("No reason to remove the file.");
@@ -128,40 +180,55 @@ public class Repository {
 			FileStager.unstageTrackedFile(fileRelativePath);
         }
 
-        removeFileNameFromFile(TRACKING_FILE, fileRelativePath);
+        FileRegistry.tracked().remove(fileRelativePath);
         System.out.println("Removed " + fileRelativePath);
     }
 
     /******************************* GLOBAL LOG FUNCTION ****************************** //
-     /** Like log displays list of commits, just on all branches, in random order. */
-    public static void globalLog() {
-        File[] commitObjectList = COMMIT_OBJECT_DIR.listFiles();
-
-        if (commitObjectList != null) {
-            for (File commitFile : commitObjectList) {
-                Commit commitObject = readObject(commitFile, Commit.class);
-
-                System.out.println(TRIPLE_EQUALS + "\ncommit " + commitObject.getHash() + "\nDate: "
-                        + commitObject.getDate() + "\n" + commitObject.getMessage() + "\n");
+     /** Like log displays list of commits, just on all branches, in the order they were created.
+     * --limit N prints at most N commits and --since DATE skips the commits made before DATE. */
+    public static void globalLog(String[] args) {
+        long since = Long.MIN_VALUE;
+        long limit = Long.MAX_VALUE;
+
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                exitWithError(GLOBAL_LOG_USAGE, false);
+            }
+            if (args[i].equals("--limit")) {
+                limit = parseLimit(args[i + 1]);
+            } else if (args[i].equals("--since")) {
+                since = parseDate(args[i + 1]);
+            } else {
+                exitWithError(GLOBAL_LOG_USAGE, false);
             }
         }
+        CommitJournal.printLog(since, limit);
     }
 
     /******************************* FIND FUNCTION ****************************** //
-     /** Prints the ids of all the commits that have the given message. */
-    public static void find(String commitMsg) {
-        File[] commitObjectList = COMMIT_OBJECT_DIR.listFiles();
-        boolean foundCommitWithMessage = false;
-
-        for (File commitFile : Objects.requireNonNull(commitObjectList)) {
-            if (doesCommitMessageMatch(commitFile, commitMsg)) {
-                foundCommitWithMessage = true;
-            }
+     /** Prints the ids of all the commits that have the given message, newest first. With -w, the
+     * commits whose message has all the given words, and with -s, the commits whose message contains
+     * the given text, both ignoring case. */
+    public static void find(String[] args) {
+        List<MessageIndex.Entry> foundCommits;
+        if (args.length == 2) {
+            foundCommits = MessageIndex.findExact(args[1]);
+        } else if (args[1].equals("-w")) {
+            foundCommits = MessageIndex.findWords(args[2]);
+        } else if (args[1].equals("-s")) {
+            foundCommits = MessageIndex.findSubstring(args[2]);
+        } else {
+            exitWithError("Usage: find [-w | -s] [commit message]", false);
+            return;
         }
 
-        if (!foundCommitWithMessage) {
+        if (foundCommits.isEmpty()) {
             System.out.println("Found no commit with that message.");
         }
+        for (MessageIndex.Entry foundCommit : foundCommits) {
+            System.out.println(foundCommit.getHash());
+        }
     }
 
     /******************************* STATUS FUNCTION ****************************** //
@@ -212,7 +279,7 @@ public class Repository {
     public static void branch(String branchName) {
         String headCommitHash = Branch.getCurrentBranchHeadHash();
         File commitFile = join(COMMIT_OBJECT_DIR, headCommitHash);
-        Commit commitObject = readObject(commitFile, Commit.class);
+        Commit commitObject = Commit.readCommit(commitFile);
 
         new Branch(branchName, commitObject, false);
     }
@@ -222,8 +289,7 @@ public class Repository {
     public static void removeBranch(String branchName) {
         Branch.branchNameChecks(branchName, "remove");
 
-        String headContent = headFileContentAfterRemovingBranch(branchName);
-        writeContents(HEAD_FILE, headContent);
+        RefStore.delete(branchName);
 
         System.out.println("Branch " + branchName + " removed successfully!");
     }
@@ -232,14 +298,13 @@ public class Repository {
      * Checks out an arbitrary commit and also changes the current branch head. */
     public static void reset(String commitHash) {
         Commit checkoutCommit = Commit.getCommitFromHash(commitHash);
-        List<String> untrackedFiles = getUntrackedFiles(CWD, new ArrayList<>());
+        Set<String> untrackedFiles = WorkingTree.snapshot().getUntrackedFiles();
 
         Map<String, String> filesOfCheckoutCommit = checkoutCommit.getStagedFilesCommit();
         checkPendingOrUntrackedChanges(untrackedFiles, filesOfCheckoutCommit);
 
-		replaceFilesInWorkingDirectory(filesOfCheckoutCommit);
+        checkoutFiles(Branch.getCurrentBranchHead().getStagedFilesCommit(), filesOfCheckoutCommit);
         FileStager.clearStagingArea();
-		deleteTrackedFiles(filesOfCheckoutCommit);
         Branch.updateBranchHead(Commit.searchCommitUsingTruncatedHash(commitHash));
 
         System.out.println("Checked out " + Branch.getCurrentBranch() +  " to commit " +
@@ -253,7 +318,7 @@ public class Repository {
 
         Commit currentBranchHeadCommit = Branch.getCurrentBranchHead();
         Map<String, String> currentBranchHeadFiles = currentBranchHeadCommit.getStagedFilesCommit();
-        List<String> untrackedFiles = Repository.getUntrackedFiles(CWD, new ArrayList<>());
+        Set<String> untrackedFiles = WorkingTree.snapshot().getUntrackedFiles();
         checkPendingOrUntrackedChanges(untrackedFiles, currentBranchHeadFiles);
 
         String mergingBranchHeadHash = Branch.getHeadHashOfBranch(mergingBranch);
@@ -266,48 +331,128 @@ public class Repository {
                 mergingBranch, splitPoint, currentBranchHeadFiles);
     }
 
+    /******************************* REPACK FUNCTION *****************************
+     /** Rolls the loose blobs into a single packfile with delta compression. */
+    public static void repack() {
+        PackFile.repack();
+    }
+
+    /******************************* GC FUNCTION *****************************
+     /** Removes the commits, trees and blobs that no branch and no staged file refers to. With
+     * --dry-run, only lists them, and with --grace, keeps the ones modified within the given number
+     * of days instead of the default two weeks. */
+    public static void gc(String[] args) {
+        boolean dryRun = false;
+        long graceDays = GarbageCollector.DEFAULT_GRACE_DAYS;
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--dry-run")) {
+                dryRun = true;
+            } else if (args[i].equals("--grace") && i + 1 < args.length) {
+                graceDays = parseGraceDays(args[++i]);
+            } else {
+                exitWithError(GC_USAGE, false);
+            }
+        }
+        GarbageCollector.collect(graceDays * 24 * 60 * 60 * 1000, dryRun);
+    }
+
+    /******************************* FSCK FUNCTION *****************************
+     /** Rehashes every commit, tree and blob against its name, in parallel, and checks that the
+     * parents, trees and blobs every commit refers to, the blobs of the staged files and the refs
+     * all exist. Prints every problem found and how fast the objects were rehashed. */
+    public static void fsck() {
+        IntegrityChecker.check();
+    }
+
+    /******************************* DIFF FUNCTION *****************************
+     /** Prints the differences between two versions of the tracked files as a unified diff. With no
+     * commits, from the staging area to the working directory, with --staged, from the head commit
+     * to the staging area, with one commit, from that commit to the working directory, and with
+     * two, from the first commit to the second. A path after -- limits the diff to that file or
+     * directory. Files with the same blob in both versions are skipped without being read. */
+    public static void diff(String[] args) {
+        List<String> versions = new ArrayList<>();
+        String pathFilter = "";
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--") && i == args.length - 2) {
+                pathFilter = args[++i];
+            } else if (args[i].equals("--")) {
+                exitWithError(DIFF_USAGE, false);
+            } else {
+                versions.add(args[i]);
+            }
+        }
+        if (versions.size() > 2 || (versions.contains("--staged") && versions.size() > 1)) {
+            exitWithError(DIFF_USAGE, false);
+        }
+
+        Map<String, String> oldFiles;
+        Map<String, String> newFiles;
+        boolean newIsWorkingTree = false;
+        if (versions.isEmpty()) {
+            oldFiles = getStagingAreaFiles();
+            newFiles = WorkingTree.snapshot().getTrackedFileHashes();
+            newIsWorkingTree = true;
+        } else if (versions.get(0).equals("--staged")) {
+            oldFiles = Branch.getCurrentBranchHead().getStagedFilesCommit();
+            newFiles = getStagingAreaFiles();
+        } else if (versions.size() == 1) {
+            oldFiles = Commit.getCommitFromHash(versions.get(0)).getStagedFilesCommit();
+            newFiles = WorkingTree.snapshot().getTrackedFileHashes();
+            newIsWorkingTree = true;
+        } else {
+            oldFiles = Commit.getCommitFromHash(versions.get(0)).getStagedFilesCommit();
+            newFiles = Commit.getCommitFromHash(versions.get(1)).getStagedFilesCommit();
+        }
+
+        SortedSet<String> paths = new TreeSet<>(oldFiles.keySet());
+        paths.addAll(newFiles.keySet());
+        for (String fileRelativePath : paths) {
+            if (!pathFilter.isEmpty() && !fileRelativePath.equals(pathFilter)
+                    && !fileRelativePath.startsWith(pathFilter + FILE_SEPARATOR)) {
+                continue;
+            }
+            String oldBlob = oldFiles.get(fileRelativePath);
+            String newBlob = newFiles.get(fileRelativePath);
+            if (!Objects.equals(oldBlob, newBlob)) {
+                printFileDiff(fileRelativePath, oldBlob, newBlob, newIsWorkingTree);
+            }
+        }
+        System.out.flush();
+    }
+
     /******************************* PRIVATE HELPER FUNCTIONS ****************************** //
      /** Adds the file to the staging area. */
     private static void addFile(String fileName, File fileToAdd, boolean verbose) {
         String fileRelativePath = getRelativePath(fileToAdd).toString();
 
-        // calculate the hash
-        byte[] contents = readContents(fileToAdd);
-        String blobName = sha1(contents);
-
-        checkAndStage(fileRelativePath, blobName, fileName, fileToAdd, verbose);
-    }
+        // stat before hashing, so that a change made while hashing shows up as a stat change
+        FileStat fileStat = FileStat.of(fileToAdd);
+        // calculate the hash and store the blob in a single pass
+        BlobStore.StoredBlob storedBlob = BlobStore.storeBlob(fileToAdd);
 
-    /** Adds filename to the contents of another file. */
-    public static void addFileNameToFile(File file, String fileName) {
-        if (!file.exists()) {
-            writeContents(file, fileName);
-        } else {
-            writeContents(file, readContentsAsString(file) + "\n" + fileName);
+        if (fileStat != null) {
+            FileStager.cacheFileStat(fileRelativePath, fileStat.withHash(storedBlob.getBlobName()));
         }
+        checkAndStage(fileRelativePath, storedBlob, fileName, verbose);
     }
 
-    /** Returns the latest common ancestor of both the branches. */
+    /** Returns the latest common ancestor of both the branches, following both parents of merge
+     * commits. */
     private static String calculateSplitPoint(String currentBranchHeadHash,
                                               String mergingBranchHeadHash) {
-        // fetch all ancestors of current branch in order, the first one that matches any ancestor of
-        // merging branch is the split point.
-
-        List<String> currentBranchAncestors = Commit.getCommitAncestors(currentBranchHeadHash);
-        List<String> mergingBranchAncestors = Commit.getCommitAncestors(mergingBranchHeadHash);
+        CommitGraph graph = CommitGraph.load();
+        int splitPoint = graph.mergeBase(graph.positionOf(currentBranchHeadHash),
+                graph.positionOf(mergingBranchHeadHash));
 
-        for (String currentBranchAncestor: currentBranchAncestors) {
-            if (mergingBranchAncestors.contains(currentBranchAncestor)) {
-                return currentBranchAncestor;
-            }
-        }
-        return "";
+        return splitPoint == CommitGraph.NO_PARENT ? "" : graph.hashAt(splitPoint);
     }
 
     /** Returns true if a file can be overwritten when a branch is switched. This works by comparing the
      * files in CWD and the branch name given, if there is any file that is not being tracked currently
      * and is not present in the given branch, then that file can be overwritten. */
-    private static boolean canAFileBeOverWritten(List<String> untrackedFiles,
+    private static boolean canAFileBeOverWritten(Set<String> untrackedFiles,
                                                  Map<String, String> filesOfHeadCommitOfBranch) {
         for (var fileAndHash: filesOfHeadCommitOfBranch.entrySet()) {
             if (untrackedFiles.contains(fileAndHash.getKey())) {
@@ -318,16 +463,41 @@ public class Repository {
         return false;
     }
 
-    /** Checks if blob already exists, and calls methods that stage accordingly. */
-    private static void checkAndStage(String fileRelativePath, String blobName,
-                                      String fileName, File fileToAdd, boolean verbose) {
-        File blobFile = join(GITLET_DIR, blobName);
+    /** Hashes and stores the blobs of the given files in parallel, returns a map of their paths to
+     * their blobs. Files whose stat data has not changed since they were last hashed are not read
+     * again if their blob exists. */
+    private static Map<String, BlobStore.StoredBlob> storeBlobs(Map<String, File> files) {
+        Map<String, BlobStore.StoredBlob> storedBlobs = new ConcurrentHashMap<>();
+        Map<String, FileStat> newFileStats = new ConcurrentHashMap<>();
+
+        files.entrySet().parallelStream().forEach(pathAndFile -> {
+            String fileRelativePath = pathAndFile.getKey();
+            FileStat fileStat = FileStat.of(pathAndFile.getValue());
+            String cachedHash = FileStager.getCachedHash(fileRelativePath, fileStat);
+
+            if (cachedHash != null && BlobStore.exists(cachedHash)) {
+                storedBlobs.put(fileRelativePath, new BlobStore.StoredBlob(cachedHash, false));
+            } else {
+                BlobStore.StoredBlob storedBlob = BlobStore.storeBlob(pathAndFile.getValue());
+                storedBlobs.put(fileRelativePath, storedBlob);
+                if (fileStat != null) {
+                    newFileStats.put(fileRelativePath, fileStat.withHash(storedBlob.getBlobName()));
+                }
+            }
+        });
+        newFileStats.forEach(FileStager::cacheFileStat);
+        return storedBlobs;
+    }
 
-        if (blobFile.exists()) {
-            FileStager.stageIfFileExists(fileRelativePath, blobName, blobFile, fileToAdd, verbose);
+    /** Checks if blob already existed, and calls methods that stage accordingly. */
+    private static void checkAndStage(String fileRelativePath, BlobStore.StoredBlob storedBlob,
+                                      String fileName, boolean verbose) {
+        String blobName = storedBlob.getBlobName();
+
+        if (!storedBlob.isNew()) {
+            FileStager.stageIfFileExists(fileRelativePath, blobName, verbose);
         } else {
-            FileStager.stageIfFileDoesNotExist(fileRelativePath, blobName, fileName, blobFile,
-                    fileToAdd, verbose);
+            FileStager.stageIfFileDoesNotExist(fileRelativePath, blobName, fileName, verbose);
         }
     }
 
@@ -353,12 +523,12 @@ public class Repository {
     }
 
     /** Checks and errors out if there are any untracked or added/removed changes yet to be committed. */
-    static void checkPendingOrUntrackedChanges(List<String> untrackedFiles,
+    static void checkPendingOrUntrackedChanges(Set<String> untrackedFiles,
                                                Map<String, String> filesOfCommit) {
         if (untrackedFiles.size() >= 1 && canAFileBeOverWritten(untrackedFiles, filesOfCommit)) {
             exitWithError("There is an untracked file in the way; delete it," +
                     " or add and commit it first.", false);
-        } else if (INDEX_FILE.exists() || UNTRACKING_FILE.exists()) {
+        } else if (FileStager.getNumberOfStagedFiles() >= 1 || !FileRegistry.removed().isEmpty()) {
             exitWithError("Changes are pending to be committed. Please commit them first.",
                     false);
         }
@@ -378,25 +548,41 @@ public class Repository {
         }
     }
 
-    /** Delete the files that are tracked but not present in the alternate branch */
-    static void deleteTrackedFiles(Map<String, String> filesOfHeadCommitOfBranch) {
-        if (TRACKING_FILE.exists()) {
-            String[] trackedFiles = getAllTrackedFiles();
+    /** Brings the working directory from the files of the head commit to the files of another
+     * commit. A file is only written if its blob differs between the two commits, or if its working
+     * copy is missing or no longer matches the head commit, and only the tracked files that are not
+     * in the other commit are deleted. Files are written in parallel by a CheckoutWriter. Prints how
+     * many files were written and deleted. */
+    static void checkoutFiles(Map<String, String> headFiles, Map<String, String> targetFiles) {
+        CheckoutWriter checkoutWriter = new CheckoutWriter();
+        int deletedFiles = 0;
+
+        for (var fileAndHash: targetFiles.entrySet()) {
+            String fileRelativePath = fileAndHash.getKey();
+            String blobName = fileAndHash.getValue();
 
-            for (String fileName: trackedFiles) {
-                if (!filesOfHeadCommitOfBranch.containsKey(fileName)) {
-                    File fileToBeDeleted = new File(fileName);
-                    if (fileToBeDeleted.exists() && !fileToBeDeleted.delete()) {
-                        exitWithError("Unable to delete file! - " + fileName, true);
-                    }
+            if (blobName.equals(headFiles.get(fileRelativePath))) {
+                checkoutWriter.addIfChanged(fileRelativePath, blobName);
+            } else {
+                checkoutWriter.add(fileRelativePath, blobName);
+            }
+        }
+        int writtenFiles = checkoutWriter.write();
+
+        Set<String> filesToDelete = new TreeSet<>(FileRegistry.tracked().getPaths());
+        filesToDelete.addAll(headFiles.keySet());
+        filesToDelete.removeAll(targetFiles.keySet());
+        for (String fileName: filesToDelete) {
+            File fileToBeDeleted = new File(fileName);
+            if (fileToBeDeleted.exists()) {
+                if (!fileToBeDeleted.delete()) {
+                    exitWithError("Unable to delete file! - " + fileName, true);
                 }
+                deletedFiles += 1;
             }
         }
-    }
 
-    /** Returns an array of all the tracked files. */
-    private static String[] getAllTrackedFiles() {
-        return readContentsAsString(TRACKING_FILE).split("\n");
+        System.out.println("Updated " + writtenFiles + " file(s), deleted " + deletedFiles + " file(s).");
     }
 
     /** Returns number of lines in a file. */
@@ -417,7 +603,7 @@ public class Repository {
 
     /** Returns number of untracked files. */
     public static long getNumberOfUntrackedFiles() {
-        return getNumberOfLinesInFile(UNTRACKING_FILE);
+        return FileRegistry.removed().size();
     }
 
     /** Get relative path for a file from the CWD. */
@@ -427,179 +613,126 @@ public class Repository {
         return cwdAbsolutePath.relativize(fileAbsolutePath);
     }
 
-    /** Get all files from the directory if they are untracked. */
-    static List<String> getUntrackedFiles(File directory, List<String> untrackedFiles) {
-        File[] fList = directory.listFiles();
-
-        if (fList != null) {
-            for (File file : fList) {
-                String fileRelativePath = getRelativePath(file).toString();
+    /** Checks if file or directory is ignored by GITLET_IGNORE or the .gitletignore file. */
+    public static boolean isInGitletIgnore(String fileName) {
+        return IgnoreMatcher.load().isIgnored(fileName);
+    }
 
-                if (!isInGitletIgnore(fileRelativePath) && !isFileNameInFile(TRACKING_FILE,
-                        fileRelativePath)) {
-                    if (file.isFile()) {
-                        untrackedFiles.add(fileRelativePath);
-                    } else if (file.isDirectory()) {
-                        untrackedFiles = getUntrackedFiles(file, untrackedFiles);
-                    }
-                }
+    /** Lists the files that are modified but not staged yet. */
+    public static void listModifiedButNotStagedFiles() {
+        for (var fileAndHash: WorkingTree.snapshot().getTrackedFileHashes().entrySet()) {
+            if (!BlobStore.exists(fileAndHash.getValue())) {
+                System.out.println(fileAndHash.getKey());
             }
         }
-        return untrackedFiles;
     }
 
-    /** Clears out the removed branch from the HEAD file. */
-    private static String headFileContentAfterRemovingBranch(String branchName) {
-        String[] branchList = Branch.getAllBranchesDetails();
-        String newHeadContent = "";
-
-        for (String branch: branchList) {
-            String repoHeadName = branch.split(" ")[0];
-            if (!repoHeadName.equals(branchName)) {
-                newHeadContent += branch + "\n";
+    /** Returns the number of commits given to global-log --limit. */
+    private static long parseLimit(String limit) {
+        try {
+            long parsedLimit = Long.parseLong(limit);
+            if (parsedLimit >= 0) {
+                return parsedLimit;
             }
+        } catch (NumberFormatException excp) {
+            // reported below
         }
-        return newHeadContent.trim();
+        exitWithError("--limit takes a number of commits.", false);
+        return 0;
     }
 
-    /** Checks if a file name is present in the contents of another file. */
-    public static boolean isFileNameInFile(File file, String filePath) {
-        if (!file.exists()) {
-            return false;
-        }
-        String[] fileContent = readContentsAsString(file).split("\n");
-
-        for (String fileName: fileContent) {
-            if (fileName.equals(filePath)) {
-                return true;
+    /** Returns the number of days given to gc --grace. */
+    private static long parseGraceDays(String days) {
+        try {
+            long parsedDays = Long.parseLong(days);
+            if (parsedDays >= 0 && parsedDays <= Integer.MAX_VALUE) {
+                return parsedDays;
             }
+        } catch (NumberFormatException excp) {
+            // reported below
         }
-        return false;
+        exitWithError("--grace takes a number of days.", false);
+        return 0;
     }
 
-    /** Checks if file or directory is present in GITLET_IGNORE list. */
-    public static boolean isInGitletIgnore(String fileName) {
-        if (GITLET_IGNORE.contains(fileName)) {
-            return true;
+    /** Returns the date given to global-log --since, a date or a date and time in the local time
+     * zone, in milliseconds since the epoch. */
+    private static long parseDate(String date) {
+        try {
+            LocalDateTime dateTime = date.contains("T") ? LocalDateTime.parse(date)
+                    : LocalDate.parse(date).atStartOfDay();
+            return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException excp) {
+            exitWithError("--since takes a date like 2021-03-14 or 2021-03-14T15:09:26.", false);
+            return 0;
         }
+    }
 
-        for (String regex: GITLET_IGNORE) {
-            if (fileName.matches(regex)) {
-                return true;
-            }
-        }
-        return false;
+    /** Returns the files of the head commit with the staged files and without the files staged
+     * for removal, i.e. what the next commit would have. */
+    private static Map<String, String> getStagingAreaFiles() {
+        Map<String, String> stagingAreaFiles = new HashMap<>(Branch.getCurrentBranchHead().getStagedFilesCommit());
+        stagingAreaFiles.putAll(FileStager.getStagedFiles());
+        stagingAreaFiles.keySet().removeAll(FileRegistry.removed().getPaths());
+        return stagingAreaFiles;
     }
 
-    /** Lists the files that are modified but not staged yet. */
-    public static void listModifiedButNotStagedFiles() {
-        File[] fList = CWD.listFiles();
+    /** Prints the diff of a single file, from OLDBLOB to NEWBLOB, either of which is null if the
+     * file does not exist in that version. The new version is read from the working directory if
+     * NEWISWORKINGTREE is set, since its blob may not have been stored. */
+    private static void printFileDiff(String fileRelativePath, String oldBlob, String newBlob,
+                                      boolean newIsWorkingTree) {
+        String oldName = oldBlob == null ? "/dev/null" : "a/" + fileRelativePath;
+        String newName = newBlob == null ? "/dev/null" : "b/" + fileRelativePath;
+        System.out.println("diff --gitlet a/" + fileRelativePath + " b/" + fileRelativePath);
+        if (oldBlob == null) {
+            System.out.println("new file");
+        } else if (newBlob == null) {
+            System.out.println("deleted file");
+        }
+        System.out.println("index " + (oldBlob == null ? "0000000" : truncateString(oldBlob, 7))
+                + ".." + (newBlob == null ? "0000000" : truncateString(newBlob, 7)));
 
-        if (fList != null) {
-            for (File file: fList) {
-                String fileRelativePath = getRelativePath(file).toString();
-                printModifiedButNotStagedFiles(fileRelativePath, file);
-            }
+        InputStream oldVersion = oldBlob == null ? InputStream.nullInputStream() : BlobStore.openBlob(oldBlob);
+        InputStream newVersion;
+        try {
+            newVersion = newBlob == null ? InputStream.nullInputStream()
+                    : newIsWorkingTree ? new FileInputStream(join(CWD, fileRelativePath)) : BlobStore.openBlob(newBlob);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+
+        if (!UnifiedDiff.writeDiff(oldName, oldVersion, newName, newVersion, System.out)) {
+            System.out.println("Binary files " + oldName + " and " + newName + " differ");
         }
     }
 
     /** Lists removed files, i.e. files that were once staged and/or tracked but aren't tracked now. */
     private static void listRemovedFiles() {
-        if (UNTRACKING_FILE.exists()) {
-            System.out.println(readContentsAsString(UNTRACKING_FILE));
+        for (String fileName: FileRegistry.removed().getPaths()) {
+            System.out.println(fileName);
         }
     }
 
     /** Checks for and lists the untracked files. */
     private static void listUntrackedFiles() {
-        List<String> untrackedFiles = getUntrackedFiles(CWD, new ArrayList<>());
+        Set<String> untrackedFiles = WorkingTree.snapshot().getUntrackedFiles();
 
         for (String fileName: untrackedFiles) {
             System.out.println(fileName);
         }
     }
 
-    /** Matches given message with provided commit's message. */
-    private static boolean doesCommitMessageMatch(File commitFile, String commitMsg) {
-        Commit commitObject = readObject(commitFile, Commit.class);
-
-        if (commitMsg.equals(commitObject.getMessage())) {
-            System.out.println(commitObject.getHash());
-            return true;
-        }
-        return false;
-    }
-
-    /** Prints the name of the file that is modified but not staged yet. */
-    private static void printModifiedButNotStagedFiles(String fileRelativePath, File file) {
-        if (!isInGitletIgnore(fileRelativePath) && isFileNameInFile(TRACKING_FILE, fileRelativePath)) {
-            byte[] contents = readContents(file);
-            String blobName = sha1(contents);
-            File blobFile = join(GITLET_DIR, blobName);
-
-            if (!blobFile.exists()) {
-                System.out.println(fileRelativePath);
-            }
-        }
-    }
-
-    /** Removes the name of given file from the contents of another file. */
-    public static void removeFileNameFromFile(File file, String fileName) {
-        if (file.exists()) {
-            String fileContent = readContentsAsString(file);
-            String[] fileContentArray = fileContent.split("\n");
-
-            for (String fileToBeRemoved: fileContentArray) {
-                if (fileToBeRemoved.equals(fileName)) {
-                    fileContent = fileContent.replace(fileToBeRemoved, "");
-                }
-            }
-            fileContent = fileContent.trim();
-            writeContents(file, fileContent);
-            deleteFileIfEmpty(file, false);
-        }
-    }
-
-    /** Removes * from the branch going active to inactive. Adds a * in front of the branch
-     * which will be active now. */
-    private static String removeFromOrSetToRepoHead(String branch, String headContent,
-                                                    String repoHeadName, boolean setFlag) {
-        String repoHeadNewName, temp = branch;
-        if (setFlag) {
-            repoHeadNewName = "*" + repoHeadName;
-            branch = branch.replaceFirst(repoHeadName, repoHeadNewName);
-        } else {
-            repoHeadName = repoHeadName.substring(1);
-            repoHeadNewName = repoHeadName;
-            branch = branch.replaceFirst("\\*" + repoHeadName, repoHeadNewName);
-        }
-
-        return headContent.replace(temp, branch);
-    }
-
-    /** When a branch is switched, this function replaces the content of the files that
-     * are being tracked in the current branch & also present in the branch to be
-     * switched to, with the content from the branch to be switched to.*/
-    static void replaceFilesInWorkingDirectory(Map<String, String> filesOfHeadCommitOfBranch) {
-        for (var fileAndHash: filesOfHeadCommitOfBranch.entrySet()) {
-            File toBeReplaced = new File(fileAndHash.getKey());
-            File toBeReplacedWith = join(GITLET_DIR, fileAndHash.getValue());
-
-            writeContents(toBeReplaced, readContentsAsString(toBeReplacedWith));
-        }
-    }
-
     /** Restores a file to its version in the specified commit. */
     public static void restoreFileFromCommit(String fileRelativePath, String fileHashInCommit,
                                               boolean headFlag, boolean verbose, String commitHash) {
-        File fileInCommit = join(GITLET_DIR, fileHashInCommit);
-        File currentVersionOfFile = new File(fileRelativePath);
-
 		System.out.println(fileHashInCommit);
-        if (!fileInCommit.exists()) {
+        if (!BlobStore.exists(fileHashInCommit)) {
             System.out.println("Unable to check out file at " + fileRelativePath + ". It has been deleted.");
         } else {
-            writeContents(currentVersionOfFile, readContentsAsString(fileInCommit));
+            CheckoutWriter checkoutWriter = new CheckoutWriter();
+            checkoutWriter.add(fileRelativePath, fileHashInCommit);
+            checkoutWriter.write();
             if (verbose) {
                 System.out.print("Checked out " + fileRelativePath + " from ");
                 System.out.println(headFlag ? "the head commit." : "commit [" +
@@ -610,17 +743,6 @@ public class Repository {
 
     /** Switches to the branch with the given name. */
     static void updateRepositoryHead(String branchName) {
-        String[] branchList = Branch.getAllBranchesDetails();
-        String headContent = readContentsAsString(HEAD_FILE);
-
-        for (String branch: branchList) {
-            String repoHeadName = branch.split(" ")[0];
-            if (branch.startsWith("*")) {
-                headContent = removeFromOrSetToRepoHead(branch, headContent, repoHeadName,false);
-            } else if (repoHeadName.equals(branchName)) {
-                headContent = removeFromOrSetToRepoHead(branch, headContent, repoHeadName,true);
-            }
-        }
-        writeContents(HEAD_FILE, headContent);
+        RefStore.setCurrentBranch(branchName);
     }
 }
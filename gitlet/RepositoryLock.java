@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/**
+ * The lock a command holds on the repository while it runs, an OS-level lock on LOCK_FILE taken
+ * with FileChannel.lock. Commands that only read the repository share the lock, so any number of
+ * them run at once, while commands that change it take the lock alone and wait for every other
+ * command to finish first. The OS releases the lock when the process ends, so a command that
+ * crashes never leaves the repository locked.
+ *
+ * Files that read-only commands still write, such as the stat data of the INDEX file or the
+ * message index when it is rebuilt, are always written to a uniquely named temporary file and
+ * renamed into place, so commands sharing the lock at most write the same file twice. Files that
+ * are updated in place are not written under a shared lock: a read-only command that would have to
+ * replay the journal of a command that did not finish, add commits to the commit-graph or its
+ * commit index, or move the refs of an old repository to their own files, takes the lock alone.
+ *
+ * A command holding the lock alone runs in a Transaction, which is begun once the lock is taken,
+ * after replaying the journal of a command that did not finish. The command commits it once it
+ * succeeds; the transaction of a command that failed is aborted when the lock is released.
+ *
+ * @author Vipul Sharma
+ */
+public class RepositoryLock implements AutoCloseable {
+	/** Commands that only read the repository. */
+	private static final Set<String> READ_ONLY_COMMANDS = Set.of("log", "global-log", "find", "status", "diff",
+			"fsck");
+
+	/** Commands that run without the lock: init creates the repository, help does not read it, and
+	 * the daemon takes the lock for each command it serves instead. */
+	private static final Set<String> UNLOCKED_COMMANDS = Set.of("init", "help", "daemon");
+
+	/** The channel of the lock file, closing it releases the lock. Null if no lock was taken. */
+	private final FileChannel channel;
+
+	/** Whether the command runs in a transaction, which is aborted when the lock is released unless
+	 * the command committed it. */
+	private final boolean transactional;
+
+	private RepositoryLock(FileChannel channel, boolean transactional) {
+		this.channel = channel;
+		this.transactional = transactional;
+	}
+
+	/** Waits for and takes the lock the command in ARGS needs, shared for read-only commands and
+	 * exclusive for all the others. Outside a repository no lock is taken. */
+	public static RepositoryLock acquire(String[] args) {
+		if (args.length == 0 || UNLOCKED_COMMANDS.contains(args[0]) || !GITLET_DIR.isDirectory()) {
+			return new RepositoryLock(null, false);
+		}
+		boolean shared = READ_ONLY_COMMANDS.contains(args[0]);
+
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(LOCK_FILE.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			// on a platform without shared locks this is an exclusive lock, and the command runs alone
+			FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+			if (shared && (Transaction.isInterrupted() || !CommitGraph.isComplete())) {
+				lock.release();
+				channel.lock(0, Long.MAX_VALUE, false);
+			}
+			Transaction.recover();
+			if (!shared) {
+				Transaction.begin();
+			}
+			return new RepositoryLock(channel, !shared);
+		} catch (IOException excp) {
+			closeQuietly(channel);
+			throw new IllegalArgumentException("Unable to lock the repository - " + excp.getMessage());
+		}
+	}
+
+	/** Aborts the transaction of the command, if it runs in one that it did not commit, and releases
+	 * the lock. */
+	@Override
+	public void close() {
+		try {
+			if (transactional) {
+				Transaction.abort();
+			}
+		} finally {
+			closeQuietly(channel);
+		}
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Closes the given channel if there is one, which releases its locks. */
+	private static void closeQuietly(FileChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException excp) {
+			// the lock is released when the process ends anyway
+		}
+	}
+}
@@ -0,0 +1,444 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static gitlet.Utils.*;
+
+/**
+ * The transaction a command that changes the repository runs in, kept in a write-ahead journal,
+ * TRANSACTION_JOURNAL_FILE. The refs, HEAD, the INDEX file and the registries are not written while
+ * the command runs: their new contents are held in memory, and when the command ends they are
+ * appended to the journal as one transaction, along with the commits, trees and blobs the command
+ * created. The journal is then fsynced, the only fsync of the transaction, the new contents are
+ * renamed into place and the transaction is marked as applied.
+ *
+ * A command that finds the last transaction not marked as applied first replays every committed
+ * transaction of the journal in order, which only rewrites what the files already hold if they had
+ * been applied after all, and drops a transaction that was cut short, none of whose writes were
+ * made. The indexes of commits, which are appended to directly, are then rebuilt.
+ *
+ * The files the journal names are fsynced at a checkpoint, once the journal outgrows
+ * CHECKPOINT_SIZE, after which the journal is emptied, so every transaction since the last
+ * checkpoint shares their fsyncs. Objects bigger than MAX_JOURNALED_OBJECT_SIZE are fsynced on their
+ * own instead of being copied into the journal. The marker of an applied transaction is never
+ * fsynced, it only becomes durable after the renames before it on file systems that persist
+ * metadata in order, as journaling file systems do.
+ *
+ * @author Vipul Sharma
+ */
+public class Transaction {
+	/** Signature at the start of the journal. */
+	private static final int JOURNAL_SIGNATURE = 0x4757414c;
+
+	/** Version of the journal format. */
+	private static final int JOURNAL_FORMAT_VERSION = 1;
+
+	/** Size of the signature and the version. */
+	private static final int HEADER_SIZE = 5;
+
+	/** Kinds of records: a new object, the new contents of a file, a deleted file, the end of a
+	 * committed transaction followed by the digest of its records, and the mark of an applied
+	 * transaction followed by the same digest. */
+	private static final int OBJECT = 1;
+	private static final int WRITE = 2;
+	private static final int DELETE = 3;
+	private static final int COMMIT = 4;
+	private static final int APPLIED = 5;
+
+	/** Size of the digest of a transaction. */
+	private static final int DIGEST_SIZE = UID_LENGTH / 2;
+
+	/** Objects bigger than this are fsynced instead of being copied into the journal. */
+	private static final long MAX_JOURNALED_OBJECT_SIZE = 1 << 20;
+
+	/** Size of the journal past which it is emptied before the next transaction. */
+	private static final long CHECKPOINT_SIZE = 8 << 20;
+
+	/** The new contents of every file written by the running transaction, in the order they were
+	 * first written, null for a deleted file. Null if no transaction is running. */
+	private static Map<File, byte[]> pendingWrites;
+
+	/** The objects created by the running transaction. */
+	private static List<File> newObjects;
+
+	/** Starts a transaction, which lasts until commit or abort is called. */
+	public static synchronized void begin() {
+		pendingWrites = new LinkedHashMap<>();
+		newObjects = new ArrayList<>();
+	}
+
+	/** Writes CONTENTS to FILE when the running transaction commits, or right away if none is
+	 * running. */
+	public static synchronized void write(File file, byte[] contents) {
+		if (pendingWrites == null) {
+			writeContentsAtomically(file, contents);
+			return;
+		}
+		pendingWrites.put(file, contents);
+	}
+
+	/** Deletes FILE when the running transaction commits, or right away if none is running. */
+	public static synchronized void delete(File file) {
+		if (pendingWrites == null) {
+			deleteIfExists(file.toPath());
+			return;
+		}
+		pendingWrites.put(file, null);
+	}
+
+	/** Returns the contents of FILE as the running transaction sees it, or null if there is no such
+	 * file. */
+	public static synchronized byte[] read(File file) {
+		if (pendingWrites != null && pendingWrites.containsKey(file)) {
+			return pendingWrites.get(file);
+		}
+		try {
+			return Files.readAllBytes(file.toPath());
+		} catch (NoSuchFileException excp) {
+			return null;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Records an object file the running transaction created, which is made durable when it
+	 * commits. */
+	public static synchronized void recordObject(File objectFile) {
+		if (newObjects != null) {
+			newObjects.add(objectFile);
+		}
+	}
+
+	/** Fsyncs the given files and their directories right away, for files that have to be durable
+	 * before the command goes on, such as a packfile whose loose blobs are deleted next. */
+	public static void sync(File... files) {
+		Set<Path> paths = new LinkedHashSet<>();
+		for (File file : files) {
+			paths.add(file.toPath());
+		}
+		syncAll(paths);
+	}
+
+	/** Commits the running transaction: appends it to the journal, fsyncs the journal and applies
+	 * it. Does nothing if no transaction is running. */
+	public static synchronized void commit() {
+		if (pendingWrites == null) {
+			return;
+		}
+		Map<File, byte[]> writes = pendingWrites;
+		List<File> objects = newObjects;
+		pendingWrites = null;
+		newObjects = null;
+		if (writes.isEmpty() && objects.isEmpty()) {
+			return;
+		}
+
+		try (FileChannel journal = openJournal()) {
+			if (journal.size() > CHECKPOINT_SIZE) {
+				checkpoint(journal);
+			}
+			journal.position(journal.size());
+			MessageDigest digest = newSha1Digest();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new DigestOutputStream(Channels.newOutputStream(journal), digest)));
+			Set<Path> largeObjects = new LinkedHashSet<>();
+			for (File object : objects) {
+				if (object.length() > MAX_JOURNALED_OBJECT_SIZE) {
+					largeObjects.add(object.toPath());
+				} else if (object.isFile()) {
+					writeRecord(out, OBJECT, object, readContents(object));
+				}
+			}
+			for (var fileAndContents : writes.entrySet()) {
+				writeRecord(out, fileAndContents.getValue() == null ? DELETE : WRITE, fileAndContents.getKey(),
+						fileAndContents.getValue());
+			}
+			out.flush();
+			byte[] transactionDigest = digest.digest();
+
+			syncAll(largeObjects);
+			journal.write(marker(COMMIT, transactionDigest));
+			journal.force(false);
+
+			for (var fileAndContents : writes.entrySet()) {
+				apply(fileAndContents.getKey(), fileAndContents.getValue());
+			}
+			journal.write(marker(APPLIED, transactionDigest));
+		} catch (IOException excp) {
+			throw new IllegalArgumentException("Could not write the transaction journal - " + excp.getMessage());
+		}
+	}
+
+	/** Aborts the running transaction, the transaction of a command that failed: none of its writes
+	 * are made, and the objects it created are left for gc. Does nothing if no transaction is
+	 * running, such as after it was committed. */
+	public static synchronized void abort() {
+		pendingWrites = null;
+		newObjects = null;
+	}
+
+	/** Fsyncs every file the journal names and empties it, for gc, which removes objects the journal
+	 * may still hold and would bring back if it were replayed. Must be called while holding the
+	 * repository alone. */
+	public static synchronized void checkpoint() {
+		try (FileChannel journal = openJournal()) {
+			checkpoint(journal);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException("Could not checkpoint the transaction journal - " + excp.getMessage());
+		}
+	}
+
+	/** Returns true if the last transaction of the journal was not marked as applied, i.e. the
+	 * command that ran it did not finish. */
+	public static boolean isInterrupted() {
+		long size = TRANSACTION_JOURNAL_FILE.length();
+		if (size <= HEADER_SIZE) {
+			return false;
+		}
+		if (size < HEADER_SIZE + 2 * (1 + DIGEST_SIZE)) {
+			return true;
+		}
+		try (FileChannel journal = FileChannel.open(TRANSACTION_JOURNAL_FILE.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer markers = ByteBuffer.allocate(2 * (1 + DIGEST_SIZE));
+			journal.read(markers, size - markers.capacity());
+			byte[] bytes = markers.array();
+			return bytes[0] != COMMIT || bytes[1 + DIGEST_SIZE] != APPLIED
+					|| !Arrays.equals(bytes, 1, 1 + DIGEST_SIZE, bytes, 2 + DIGEST_SIZE, bytes.length);
+		} catch (IOException excp) {
+			return true;
+		}
+	}
+
+	/** Replays the journal if the last command that changed the repository did not finish, then
+	 * empties it and rebuilds the indexes of commits. Must be called while holding the repository
+	 * alone. */
+	public static synchronized void recover() {
+		if (!isInterrupted()) {
+			return;
+		}
+		try (FileChannel journal = openJournal()) {
+			Set<Path> replayedFiles = new LinkedHashSet<>();
+			long position = HEADER_SIZE;
+			long end;
+			while ((end = endOfTransaction(journal, position)) > 0) {
+				readRecords(journal, position, (kind, file, contents) -> {
+					apply(file, contents);
+					replayedFiles.add(file.toPath());
+				});
+				position = end;
+			}
+			syncAll(replayedFiles);
+			empty(journal);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException("Could not replay the transaction journal - " + excp.getMessage());
+		}
+		GarbageCollector.rebuildCommitIndexes();
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** What is done with each record of a transaction. */
+	private interface RecordAction {
+		void accept(int kind, File file, byte[] contents) throws IOException;
+	}
+
+	/** Opens the journal, creating it or emptying it if it does not start with a valid header. */
+	private static FileChannel openJournal() throws IOException {
+		FileChannel journal = FileChannel.open(TRANSACTION_JOURNAL_FILE.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		journal.read(header, 0);
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != JOURNAL_SIGNATURE
+				|| header.get() != JOURNAL_FORMAT_VERSION) {
+			empty(journal);
+		}
+		return journal;
+	}
+
+	/** Truncates the journal to its header. */
+	private static void empty(FileChannel journal) throws IOException {
+		journal.truncate(0);
+		journal.write(ByteBuffer.allocate(HEADER_SIZE).putInt(JOURNAL_SIGNATURE)
+				.put((byte) JOURNAL_FORMAT_VERSION).flip(), 0);
+		journal.force(false);
+	}
+
+	/** Fsyncs every file the journal names and empties it. */
+	private static void checkpoint(FileChannel journal) throws IOException {
+		Set<Path> journaledFiles = new LinkedHashSet<>();
+		long position = HEADER_SIZE;
+		long end;
+		while ((end = endOfTransaction(journal, position)) > 0) {
+			readRecords(journal, position, (kind, file, contents) -> journaledFiles.add(file.toPath()));
+			position = end;
+		}
+		syncAll(journaledFiles);
+		empty(journal);
+	}
+
+	/** Writes a record of the given kind for FILE, named relative to GITLET_DIR, with its CONTENTS
+	 * unless it is deleted. */
+	private static void writeRecord(DataOutputStream out, int kind, File file, byte[] contents)
+			throws IOException {
+		out.writeByte(kind);
+		out.writeUTF(GITLET_DIR.toPath().relativize(file.toPath()).toString());
+		if (kind != DELETE) {
+			out.writeInt(contents.length);
+			out.write(contents);
+		}
+	}
+
+	/** Returns the given marker record with the digest of its transaction. */
+	private static ByteBuffer marker(int kind, byte[] transactionDigest) {
+		return ByteBuffer.allocate(1 + DIGEST_SIZE).put((byte) kind).put(transactionDigest).flip();
+	}
+
+	/** Returns the position after the transaction starting at POSITION and its applied marker, if
+	 * any, or -1 if no committed transaction starts there, such as one cut short by a crash. */
+	private static long endOfTransaction(FileChannel journal, long position) throws IOException {
+		MessageDigest digest = newSha1Digest();
+		CountingInputStream counted = new CountingInputStream(new BufferedInputStream(
+				Channels.newInputStream(journal.position(position))));
+		DigestInputStream digested = new DigestInputStream(counted, digest);
+		DataInputStream in = new DataInputStream(digested);
+		try {
+			while (true) {
+				// the kind is digested by hand, so the commit marker is left out of the digest
+				digested.on(false);
+				int kind = in.readUnsignedByte();
+				if (kind == COMMIT) {
+					break;
+				}
+				if (kind != OBJECT && kind != WRITE && kind != DELETE) {
+					return -1;
+				}
+				digest.update((byte) kind);
+				digested.on(true);
+				in.readUTF();
+				if (kind != DELETE) {
+					int length = in.readInt();
+					if (length < 0 || in.readNBytes(length).length != length) {
+						return -1;
+					}
+				}
+			}
+			byte[] transactionDigest = in.readNBytes(DIGEST_SIZE);
+			if (!Arrays.equals(transactionDigest, digest.digest())) {
+				return -1;
+			}
+			long end = position + counted.count;
+			byte[] applied = in.readNBytes(1 + DIGEST_SIZE);
+			if (applied.length == 1 + DIGEST_SIZE && applied[0] == APPLIED) {
+				end += applied.length;
+			}
+			return end;
+		} catch (EOFException | UTFDataFormatException excp) {
+			return -1;
+		}
+	}
+
+	/** A stream that counts the bytes read from it. */
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			count += b == -1 ? 0 : 1;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			count += Math.max(read, 0);
+			return read;
+		}
+	}
+
+	/** Runs ACTION on every record of the committed transaction starting at POSITION. */
+	private static void readRecords(FileChannel journal, long position, RecordAction action) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+				journal.position(position))));
+		int kind;
+		while ((kind = in.readUnsignedByte()) != COMMIT) {
+			File file = join(GITLET_DIR, in.readUTF());
+			action.accept(kind, file, kind == DELETE ? null : in.readNBytes(in.readInt()));
+		}
+	}
+
+	/** Writes CONTENTS to FILE, or deletes it if CONTENTS is null. */
+	private static void apply(File file, byte[] contents) {
+		if (contents == null) {
+			deleteIfExists(file.toPath());
+		} else {
+			writeContentsAtomically(file, contents);
+		}
+	}
+
+	/** Deletes the given file if it exists. */
+	private static void deleteIfExists(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/** Fsyncs the given files that exist, then the directories holding them. */
+	private static void syncAll(Set<Path> paths) {
+		Set<Path> directories = new LinkedHashSet<>();
+		for (Path path : paths) {
+			directories.add(path.toAbsolutePath().getParent());
+			if (Files.isRegularFile(path)) {
+				force(path);
+			}
+		}
+		for (Path directory : directories) {
+			try {
+				force(directory);
+			} catch (IllegalArgumentException excp) {
+				// some platforms cannot open a directory to fsync it
+			}
+		}
+	}
+
+	/** Fsyncs the given file or directory. */
+	private static void force(Path path) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents a tree object, the contents of a single directory of a commit. A tree maps the names
+ * of the files in its directory to their blobs and the names of its subdirectories to their trees.
+ * Trees are named by the sha1-hash of their encoding, so a commit only needs the hash of its root
+ * tree, and directories that did not change between two commits share the same tree object.
+ *
+ * @author Vipul Sharma
+ */
+public class Tree {
+	/** Magic bytes at the start of every encoded tree ("GTRE"). */
+	private static final int TREE_SIGNATURE = 0x47545245;
+
+	/** Version of the tree encoding written by this version of Gitlet. */
+	private static final int TREE_FORMAT_VERSION = 1;
+
+	/** Maps the names of the files in this directory to their blobs. */
+	private final TreeMap<String, String> blobs;
+
+	/** Maps the names of the subdirectories of this directory to their trees. */
+	private final TreeMap<String, String> subtrees;
+
+	private Tree(TreeMap<String, String> blobs, TreeMap<String, String> subtrees) {
+		this.blobs = blobs;
+		this.subtrees = subtrees;
+	}
+
+	/** Writes the trees of a complete map of file paths to blobs, returns the hash of the root tree. */
+	public static String writeTree(Map<String, String> stagedFiles) {
+		return updateTree(null, stagedFiles);
+	}
+
+	/** Applies CHANGES, a map of file paths to their new blobs or to null for removed files, to the
+	 * tree with the given hash. Only the trees of the directories that contain a changed path are
+	 * rewritten. Returns the hash of the new root tree. */
+	public static String updateTree(String treeHash, Map<String, String> changes) {
+		String newTreeHash = applyChanges(treeHash, changes);
+		if (newTreeHash == null) {
+			newTreeHash = writeTreeObject(new Tree(new TreeMap<>(), new TreeMap<>()));
+		}
+		return newTreeHash;
+	}
+
+	/** Returns the blob of the file at the given path in the tree with the given hash, or null if
+	 * there is no such file. Only the trees along the path are read. */
+	public static String lookup(String treeHash, String fileRelativePath) {
+		String[] pathSegments = fileRelativePath.split(Pattern.quote(FILE_SEPARATOR));
+
+		for (int i = 0; i < pathSegments.length - 1 && treeHash != null; i++) {
+			treeHash = readTree(treeHash).subtrees.get(pathSegments[i]);
+		}
+		return treeHash == null ? null : readTree(treeHash).blobs.get(pathSegments[pathSegments.length - 1]);
+	}
+
+	/** Returns the complete map of file paths to blobs of the tree with the given hash. */
+	public static Map<String, String> flatten(String treeHash) {
+		Map<String, String> stagedFiles = new HashMap<>();
+		flatten(treeHash, "", stagedFiles);
+		return stagedFiles;
+	}
+
+	/** Maps every blob reachable from the tree with the given hash to a path it is stored under,
+	 * unless the blob already has a path. Trees in VISITEDTREES are skipped. */
+	public static void collectBlobPaths(String treeHash, String pathPrefix, Map<String, String> blobPaths,
+	                                    Set<String> visitedTrees) {
+		if (!visitedTrees.add(treeHash)) {
+			return;
+		}
+		Tree tree = readTree(treeHash);
+
+		for (var fileAndHash : tree.blobs.entrySet()) {
+			blobPaths.putIfAbsent(fileAndHash.getValue(), pathPrefix + fileAndHash.getKey());
+		}
+		for (var directoryAndHash : tree.subtrees.entrySet()) {
+			collectBlobPaths(directoryAndHash.getValue(), pathPrefix + directoryAndHash.getKey() + FILE_SEPARATOR,
+					blobPaths, visitedTrees);
+		}
+	}
+
+	/** Adds the tree with the given hash and every tree and blob below it to REACHABLE. Trees that
+	 * are already in REACHABLE are skipped along with everything below them. */
+	public static void markReachable(String treeHash, ObjectIdSet reachable) {
+		if (!reachable.add(treeHash)) {
+			return;
+		}
+		Tree tree = readTree(treeHash);
+
+		for (String blobName : tree.blobs.values()) {
+			reachable.add(blobName);
+		}
+		for (String subtreeHash : tree.subtrees.values()) {
+			markReachable(subtreeHash, reachable);
+		}
+	}
+
+	/** Returns the hash of the first tree below the tree with the given hash, itself included, that
+	 * is not in PRESENTTREES, or null if there is none. Trees in CHECKEDTREES are skipped, and every
+	 * tree found complete is added to it. */
+	static String findMissingTree(String treeHash, ObjectIdSet presentTrees, ObjectIdSet checkedTrees) {
+		if (checkedTrees.contains(treeHash)) {
+			return null;
+		}
+		if (!presentTrees.contains(treeHash)) {
+			return treeHash;
+		}
+		for (String subtreeHash : readTree(treeHash).subtrees.values()) {
+			String missingTree = findMissingTree(subtreeHash, presentTrees, checkedTrees);
+			if (missingTree != null) {
+				return missingTree;
+			}
+		}
+		checkedTrees.add(treeHash);
+		return null;
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** Applies CHANGES, given relative to this tree's directory, to the tree with the given hash
+	 * (or to an empty tree if the hash is null). Returns null if the resulting tree is empty. */
+	private static String applyChanges(String treeHash, Map<String, String> changes) {
+		Tree oldTree = treeHash == null ? null : readTree(treeHash);
+		TreeMap<String, String> blobs = oldTree == null ? new TreeMap<>() : new TreeMap<>(oldTree.blobs);
+		TreeMap<String, String> subtrees = oldTree == null ? new TreeMap<>()
+				: new TreeMap<>(oldTree.subtrees);
+		Map<String, Map<String, String>> changesBySubtree = new HashMap<>();
+
+		for (var fileAndHash : changes.entrySet()) {
+			String fileRelativePath = fileAndHash.getKey();
+			int separatorIndex = fileRelativePath.indexOf(FILE_SEPARATOR);
+
+			if (separatorIndex < 0 && fileAndHash.getValue() == null) {
+				blobs.remove(fileRelativePath);
+			} else if (separatorIndex < 0) {
+				blobs.put(fileRelativePath, fileAndHash.getValue());
+			} else {
+				changesBySubtree.computeIfAbsent(fileRelativePath.substring(0, separatorIndex),
+						directory -> new HashMap<>()).put(fileRelativePath.substring(separatorIndex
+						+ FILE_SEPARATOR.length()), fileAndHash.getValue());
+			}
+		}
+
+		for (var directoryAndChanges : changesBySubtree.entrySet()) {
+			String directory = directoryAndChanges.getKey();
+			String subtreeHash = applyChanges(subtrees.get(directory), directoryAndChanges.getValue());
+
+			if (subtreeHash == null) {
+				subtrees.remove(directory);
+			} else {
+				subtrees.put(directory, subtreeHash);
+			}
+		}
+
+		if (blobs.isEmpty() && subtrees.isEmpty()) {
+			return null;
+		}
+		return writeTreeObject(new Tree(blobs, subtrees));
+	}
+
+	/** Adds the files of the tree with the given hash to STAGEDFILES, prefixing their paths. */
+	private static void flatten(String treeHash, String pathPrefix, Map<String, String> stagedFiles) {
+		Tree tree = readTree(treeHash);
+
+		for (var fileAndHash : tree.blobs.entrySet()) {
+			stagedFiles.put(pathPrefix + fileAndHash.getKey(), fileAndHash.getValue());
+		}
+		for (var directoryAndHash : tree.subtrees.entrySet()) {
+			flatten(directoryAndHash.getValue(), pathPrefix + directoryAndHash.getKey() + FILE_SEPARATOR,
+					stagedFiles);
+		}
+	}
+
+	/** Returns the number of entries of this tree. */
+	int size() {
+		return blobs.size() + subtrees.size();
+	}
+
+	/** Returns the tree with the given hash. */
+	private static Tree readTree(String treeHash) {
+		return ObjectCache.TREES.get(treeHash, Tree::readTreeObject);
+	}
+
+	/** Reads the tree with the given hash from its tree file. */
+	private static Tree readTreeObject(String treeHash) {
+		Tree tree = null;
+		File treeFile = join(TREE_DIR, treeHash);
+		if (!treeFile.isFile()) {
+			exitWithError(CORRUPTED_REPO, false);
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(readContents(treeFile)))) {
+			if (in.readInt() != TREE_SIGNATURE || in.readUnsignedByte() != TREE_FORMAT_VERSION) {
+				exitWithError(CORRUPTED_REPO, false);
+			}
+			tree = new Tree(readEntries(in), readEntries(in));
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+		return tree;
+	}
+
+	/** Writes the given tree unless a tree with the same contents exists, returns its hash. */
+	private static String writeTreeObject(Tree tree) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(TREE_SIGNATURE);
+			out.writeByte(TREE_FORMAT_VERSION);
+			writeEntries(out, tree.blobs);
+			writeEntries(out, tree.subtrees);
+		} catch (IOException excp) {
+			throw error("Internal error encoding tree.");
+		}
+
+		byte[] encodedTree = bytes.toByteArray();
+		String treeHash = sha1(encodedTree);
+		File treeFile = join(TREE_DIR, treeHash);
+
+		if (!treeFile.exists()) {
+			if (!TREE_DIR.exists() && !TREE_DIR.mkdir()) {
+				exitWithError("Could not initialize Gitlet trees directory.", false);
+			}
+			writeContentsAtomically(treeFile, encodedTree);
+			Transaction.recordObject(treeFile);
+		}
+		ObjectCache.TREES.put(treeHash, tree);
+		return treeHash;
+	}
+
+	/** Writes the number of entries followed by each name and the hash it maps to. */
+	private static void writeEntries(DataOutputStream out, TreeMap<String, String> entries)
+			throws IOException {
+		out.writeInt(entries.size());
+		for (var nameAndHash : entries.entrySet()) {
+			byte[] name = nameAndHash.getKey().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(name.length);
+			out.write(name);
+			out.write(fromHexString(nameAndHash.getValue()));
+		}
+	}
+
+	/** Reads entries written by writeEntries. */
+	private static TreeMap<String, String> readEntries(DataInputStream in) throws IOException {
+		TreeMap<String, String> entries = new TreeMap<>();
+		int numberOfEntries = in.readInt();
+		byte[] hash = new byte[UID_LENGTH / 2];
+
+		for (int i = 0; i < numberOfEntries; i++) {
+			byte[] name = new byte[in.readInt()];
+			in.readFully(name);
+			in.readFully(hash);
+			entries.put(new String(name, StandardCharsets.UTF_8), toHexString(hash));
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,251 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes the differences between two versions of a file as the hunks of a unified diff, with
+ * three lines of context around every change. Both versions are streamed: at most WINDOW_SIZE
+ * lines of each are held at a time and matched by LineDiff, and everything up to the last matched
+ * line well inside the window is written before the window moves on. Changes spread over less
+ * than a window are found exactly, longer ones may show more lines as changed than needed.
+ *
+ * @author Vipul Sharma
+ */
+public class UnifiedDiff {
+	/** Most lines of each version held in memory at a time. */
+	private static final int WINDOW_SIZE = 8192;
+
+	/** Lines of context around every change. */
+	private static final int CONTEXT_LINES = 3;
+
+	/** Number of bytes looked at to decide whether a version is binary. */
+	private static final int BINARY_CHECK_SIZE = 8000;
+
+	/** Where the hunks are written. */
+	private final OutputStream out;
+
+	/** The lines of the current hunk, starting with its leading context. */
+	private final List<HunkLine> hunk = new ArrayList<>();
+
+	/** The latest unchanged lines outside any hunk, the leading context of the next hunk. */
+	private final Deque<HunkLine> leadingContext = new ArrayDeque<>();
+
+	/** Number of unchanged lines at the end of the current hunk. */
+	private int trailingContext;
+
+	private UnifiedDiff(OutputStream out) {
+		this.out = out;
+	}
+
+	/** Writes the differences from OLDVERSION to NEWVERSION to OUT, the names of both versions
+	 * followed by the hunks, and closes both versions. Returns false without writing anything if
+	 * either version is binary. */
+	public static boolean writeDiff(String oldName, InputStream oldVersion, String newName,
+	                                InputStream newVersion, OutputStream out) {
+		try (BufferedInputStream oldIn = new BufferedInputStream(oldVersion);
+		     BufferedInputStream newIn = new BufferedInputStream(newVersion)) {
+			if (isBinary(oldIn) || isBinary(newIn)) {
+				return false;
+			}
+			UnifiedDiff unifiedDiff = new UnifiedDiff(out);
+			unifiedDiff.write("--- " + oldName + "\n+++ " + newName + "\n");
+			unifiedDiff.diff(oldIn, newIn);
+			return true;
+		} catch (IOException excp) {
+			throw new IllegalArgumentException(excp.getMessage());
+		}
+	}
+
+	/******************************* PRIVATE HELPER FUNCTIONS ****************************** /
+	/** A line of a hunk, with its line numbers in both versions. A removed line has the number of
+	 * the next line of the new version, and an added line that of the next line of the old one. */
+	private static class HunkLine {
+		private final char kind;
+		private final String line;
+		private final int oldLineNumber;
+		private final int newLineNumber;
+
+		HunkLine(char kind, String line, int oldLineNumber, int newLineNumber) {
+			this.kind = kind;
+			this.line = line;
+			this.oldLineNumber = oldLineNumber;
+			this.newLineNumber = newLineNumber;
+		}
+	}
+
+	/** Returns true if the start of the given stream has a NUL byte. The stream is left where it was. */
+	private static boolean isBinary(BufferedInputStream in) throws IOException {
+		in.mark(BINARY_CHECK_SIZE);
+		byte[] start = in.readNBytes(BINARY_CHECK_SIZE);
+		in.reset();
+		return LineDiff.isBinary(start);
+	}
+
+	/** Returns the next line of the given stream with its line terminator, or null at its end. */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != -1) {
+			line.write(c);
+			if (c == '\n') {
+				break;
+			}
+		}
+		return line.size() == 0 ? null : line.toString(StandardCharsets.ISO_8859_1);
+	}
+
+	/** Reads lines from IN into LINES until it holds WINDOW_SIZE of them, returns false if IN has
+	 * no more lines. */
+	private static boolean fill(InputStream in, List<String> lines) throws IOException {
+		while (lines.size() < WINDOW_SIZE) {
+			String line = readLine(in);
+			if (line == null) {
+				return false;
+			}
+			lines.add(line);
+		}
+		return true;
+	}
+
+	/** Diffs the two versions one window at a time. */
+	private void diff(InputStream oldIn, InputStream newIn) throws IOException {
+		List<String> oldLines = new ArrayList<>();
+		List<String> newLines = new ArrayList<>();
+		int oldLineNumber = 1;
+		int newLineNumber = 1;
+		boolean oldHasMore = true;
+		boolean newHasMore = true;
+
+		while (true) {
+			oldHasMore = oldHasMore && fill(oldIn, oldLines);
+			newHasMore = newHasMore && fill(newIn, newLines);
+			if (oldLines.isEmpty() && newLines.isEmpty()) {
+				break;
+			}
+
+			int[] matches = LineDiff.match(oldLines, newLines);
+			int oldCut = oldLines.size();
+			int newCut = newLines.size();
+			if (oldHasMore || newHasMore) {
+				// keep the end of the window on a side with more lines to read, which may match them;
+				// without a match well inside the window, move on to its last match at least
+				int lastMatch = -1;
+				int anchor = -1;
+				for (int i = 0; i < matches.length; i++) {
+					if (matches[i] < 0) {
+						continue;
+					}
+					lastMatch = i;
+					if ((!oldHasMore || i < oldLines.size() - WINDOW_SIZE / 4)
+							&& (!newHasMore || matches[i] < newLines.size() - WINDOW_SIZE / 4)) {
+						anchor = i;
+					}
+				}
+				anchor = anchor >= 0 ? anchor : lastMatch;
+				if (anchor >= 0) {
+					oldCut = anchor + 1;
+					newCut = matches[anchor] + 1;
+				}
+			}
+
+			int newLine = 0;
+			for (int oldLine = 0; oldLine < oldCut; oldLine++) {
+				if (matches[oldLine] < 0) {
+					addChange('-', oldLines.get(oldLine), oldLineNumber + oldLine, newLineNumber + newLine);
+					continue;
+				}
+				for (; newLine < matches[oldLine]; newLine++) {
+					addChange('+', newLines.get(newLine), oldLineNumber + oldLine, newLineNumber + newLine);
+				}
+				addUnchanged(oldLines.get(oldLine), oldLineNumber + oldLine, newLineNumber + newLine);
+				newLine++;
+			}
+			for (; newLine < newCut; newLine++) {
+				addChange('+', newLines.get(newLine), oldLineNumber + oldCut, newLineNumber + newLine);
+			}
+
+			oldLines.subList(0, oldCut).clear();
+			newLines.subList(0, newCut).clear();
+			oldLineNumber += oldCut;
+			newLineNumber += newCut;
+		}
+		writeHunk();
+	}
+
+	/** Adds a removed or added line, starting a new hunk if needed. */
+	private void addChange(char kind, String line, int oldLineNumber, int newLineNumber) {
+		if (hunk.isEmpty()) {
+			hunk.addAll(leadingContext);
+			leadingContext.clear();
+		}
+		hunk.add(new HunkLine(kind, line, oldLineNumber, newLineNumber));
+		trailingContext = 0;
+	}
+
+	/** Adds an unchanged line, ending the current hunk once it is followed by more unchanged lines
+	 * than the context of two hunks. */
+	private void addUnchanged(String line, int oldLineNumber, int newLineNumber) throws IOException {
+		HunkLine unchanged = new HunkLine(' ', line, oldLineNumber, newLineNumber);
+		if (hunk.isEmpty()) {
+			leadingContext.addLast(unchanged);
+			if (leadingContext.size() > CONTEXT_LINES) {
+				leadingContext.removeFirst();
+			}
+			return;
+		}
+
+		hunk.add(unchanged);
+		trailingContext += 1;
+		if (trailingContext > 2 * CONTEXT_LINES) {
+			List<HunkLine> nextContext = hunk.subList(hunk.size() - CONTEXT_LINES, hunk.size());
+			leadingContext.addAll(nextContext);
+			nextContext.clear();
+			hunk.subList(hunk.size() - (trailingContext - 2 * CONTEXT_LINES), hunk.size()).clear();
+			trailingContext = CONTEXT_LINES;
+			writeHunk();
+		}
+	}
+
+	/** Writes the current hunk, without the unchanged lines after its trailing context. */
+	private void writeHunk() throws IOException {
+		if (hunk.isEmpty()) {
+			return;
+		}
+		if (trailingContext > CONTEXT_LINES) {
+			hunk.subList(hunk.size() - (trailingContext - CONTEXT_LINES), hunk.size()).clear();
+		}
+
+		int oldCount = 0;
+		int newCount = 0;
+		for (HunkLine hunkLine : hunk) {
+			oldCount += hunkLine.kind == '+' ? 0 : 1;
+			newCount += hunkLine.kind == '-' ? 0 : 1;
+		}
+		int oldStart = hunk.get(0).oldLineNumber - (oldCount == 0 ? 1 : 0);
+		int newStart = hunk.get(0).newLineNumber - (newCount == 0 ? 1 : 0);
+		write("@@ -" + oldStart + "," + oldCount + " +" + newStart + "," + newCount + " @@\n");
+
+		for (HunkLine hunkLine : hunk) {
+			write(hunkLine.kind + hunkLine.line);
+			if (!hunkLine.line.endsWith("\n")) {
+				write("\n\\ No newline at end of file\n");
+			}
+		}
+		hunk.clear();
+		trailingContext = 0;
+	}
+
+	/** Writes the given text, whose chars are bytes. */
+	private void write(String text) throws IOException {
+		out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+	}
+}
@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static gitlet.Utils.*;
+
+/**
+ * Represents a snapshot of the working directory, the files that are not ignored and whether
+ * they are tracked. The snapshot is taken once per command by walking the directories in parallel
+ * on the common fork-join pool, and is shared by every part of the command that needs it.
+ *
+ * @author Vipul Sharma
+ */
+public class WorkingTree {
+	/** The snapshot of the working directory, taken lazily once per command. */
+	private static WorkingTree loadedSnapshot;
+
+	/** Maps the relative path of every file in the working directory to the file. */
+	private final SortedMap<String, File> files;
+
+	/** Relative paths of the files that are tracked in the current branch. */
+	private final Set<String> trackedFiles;
+
+	/** Maps the relative path of every tracked file in the working directory to the hash of its
+	 * contents, calculated the first time it is needed. */
+	private SortedMap<String, String> trackedFileHashes;
+
+	private WorkingTree(SortedMap<String, File> files, Set<String> trackedFiles) {
+		this.files = files;
+		this.trackedFiles = trackedFiles;
+	}
+
+	/** Returns the snapshot of the working directory. */
+	public static WorkingTree snapshot() {
+		if (loadedSnapshot == null) {
+			SortedMap<String, File> files = new ConcurrentSkipListMap<>();
+			ForkJoinPool.commonPool().invoke(new DirectoryScan(CWD, "", IgnoreMatcher.load(), files));
+			loadedSnapshot = new WorkingTree(files, FileRegistry.tracked().getPaths());
+		}
+		return loadedSnapshot;
+	}
+
+	/** Forgets the snapshot of the working directory, so it is taken again the next time it is
+	 * needed. */
+	static void reset() {
+		loadedSnapshot = null;
+	}
+
+	/** Returns the relative paths of the files in the working directory that are not tracked,
+	 * sorted. */
+	public SortedSet<String> getUntrackedFiles() {
+		SortedSet<String> untrackedFiles = new TreeSet<>();
+		for (String fileRelativePath : files.keySet()) {
+			if (!trackedFiles.contains(fileRelativePath)) {
+				untrackedFiles.add(fileRelativePath);
+			}
+		}
+		return untrackedFiles;
+	}
+
+	/** Returns a map of the relative path of every file under the directory at the given relative
+	 * path to the file, or of every file if the path is empty. */
+	public SortedMap<String, File> getFilesUnder(String directoryRelativePath) {
+		if (directoryRelativePath.isEmpty()) {
+			return files;
+		}
+		String pathPrefix = directoryRelativePath + FILE_SEPARATOR;
+		return files.subMap(pathPrefix, pathPrefix + Character.MAX_VALUE);
+	}
+
+	/** Returns a map of the relative path of every tracked file in the working directory to the
+	 * hash of its contents, sorted by path. Files are hashed in parallel, and only if their stat
+	 * data has changed since they were last hashed. */
+	public SortedMap<String, String> getTrackedFileHashes() {
+		if (trackedFileHashes != null) {
+			return trackedFileHashes;
+		}
+
+		Map<String, String> hashes = new ConcurrentHashMap<>();
+		Map<String, FileStat> newFileStats = new ConcurrentHashMap<>();
+		files.entrySet().parallelStream()
+				.filter(pathAndFile -> trackedFiles.contains(pathAndFile.getKey()))
+				.forEach(pathAndFile -> {
+					String fileRelativePath = pathAndFile.getKey();
+					FileStat fileStat = FileStat.of(pathAndFile.getValue());
+					String blobName = FileStager.getCachedHash(fileRelativePath, fileStat);
+
+					if (blobName == null) {
+						blobName = BlobStore.hashFile(pathAndFile.getValue());
+						if (fileStat != null) {
+							newFileStats.put(fileRelativePath, fileStat.withHash(blobName));
+						}
+					}
+					hashes.put(fileRelativePath, blobName);
+				});
+		newFileStats.forEach(FileStager::cacheFileStat);
+
+		trackedFileHashes = new TreeMap<>(hashes);
+		return trackedFileHashes;
+	}
+
+	/** Lists one directory and forks a scan of each of its subdirectories. Ignored files are left
+	 * out, and ignored directories are never listed. */
+	private static class DirectoryScan extends RecursiveAction {
+		private final File directory;
+		private final String pathPrefix;
+		private final IgnoreMatcher ignoreMatcher;
+		private final Map<String, File> files;
+
+		DirectoryScan(File directory, String pathPrefix, IgnoreMatcher ignoreMatcher, Map<String, File> files) {
+			this.directory = directory;
+			this.pathPrefix = pathPrefix;
+			this.ignoreMatcher = ignoreMatcher;
+			this.files = files;
+		}
+
+		@Override
+		protected void compute() {
+			File[] fList = directory.listFiles();
+			if (fList == null) {
+				return;
+			}
+
+			List<DirectoryScan> subdirectoryScans = new ArrayList<>();
+			for (File file : fList) {
+				String fileRelativePath = pathPrefix + file.getName();
+
+				if (ignoreMatcher.isIgnored(fileRelativePath)) {
+					continue;
+				}
+				if (file.isFile()) {
+					files.put(fileRelativePath, file);
+				} else if (file.isDirectory()) {
+					subdirectoryScans.add(new DirectoryScan(file, fileRelativePath + FILE_SEPARATOR,
+							ignoreMatcher, files));
+				}
+			}
+			invokeAll(subdirectoryScans);
+		}
+	}
+}